@@ -0,0 +1,237 @@
+package dev.cerus.maps.benchmark;
+
+import dev.cerus.maps.api.ClientsideMap;
+import dev.cerus.maps.api.graphics.BufferLayout;
+import dev.cerus.maps.api.graphics.ClientsideMapGraphics;
+import dev.cerus.maps.api.graphics.FastMapScreenGraphics;
+import dev.cerus.maps.util.Vec2;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the row based change detection of renderOnto with the old per pixel loop
+ * <p>
+ * Every invocation resets the render targets to a stale snapshot first, so both
+ * variants always see the same amount of changes. The mismatch variants mark the whole
+ * buffer as dirty, so they compare every tile just like the legacy loop.
+ * <p>
+ * The idle variants measure a render without any writes since the last one, which
+ * is what a static screen costs per refresh.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderOntoBenchmark {
+
+    // 16x9 video wall
+    private static final int SCREEN_WIDTH = 16;
+    private static final int SCREEN_HEIGHT = 9;
+
+    /**
+     * none = nothing changed, sparse = a few small widgets changed, full = every pixel changed
+     */
+    @Param({"none", "sparse", "full"})
+    private String changes;
+
+    @Param({"PACKED", "TILED"})
+    private BufferLayout layout;
+
+    private ClientsideMapGraphics mapGraphics;
+    private ClientsideMap map;
+    private byte[] staleMapData;
+
+    private FastMapScreenGraphics screenGraphics;
+    private ClientsideMap[][] screenMaps;
+    private byte[][][] staleScreenData;
+
+    @Setup
+    public void setup() {
+        this.mapGraphics = new ClientsideMapGraphics();
+        this.map = new ClientsideMap();
+        this.screenGraphics = new FastMapScreenGraphics(SCREEN_WIDTH, SCREEN_HEIGHT, this.layout);
+        this.screenMaps = new ClientsideMap[SCREEN_WIDTH][SCREEN_HEIGHT];
+        for (int x = 0; x < SCREEN_WIDTH; x++) {
+            for (int y = 0; y < SCREEN_HEIGHT; y++) {
+                this.screenMaps[x][y] = new ClientsideMap();
+            }
+        }
+
+        // Sync everything once, then apply the changes
+        final Random random = new Random(42);
+        this.mapGraphics.fillComplete((byte) 34);
+        this.screenGraphics.fillComplete((byte) 34);
+        this.mapGraphics.renderOnto(this.map);
+        this.screenGraphics.renderOnto(null, this.screenMaps);
+        switch (this.changes) {
+            case "sparse" -> {
+                this.mapGraphics.fillRect(4, 4, 20, 8, (byte) 58, 1f);
+                this.mapGraphics.fillRect(100, 110, 20, 8, (byte) 58, 1f);
+                for (int i = 0; i < 40; i++) {
+                    this.screenGraphics.fillRect(random.nextInt(this.screenGraphics.getWidth()),
+                            random.nextInt(this.screenGraphics.getHeight()), 24, 10, (byte) 58, 1f);
+                }
+            }
+            case "full" -> {
+                for (int x = 0; x < this.screenGraphics.getWidth(); x++) {
+                    for (int y = 0; y < this.screenGraphics.getHeight(); y++) {
+                        final byte color = (byte) (4 + random.nextInt(200));
+                        this.screenGraphics.setPixel(x, y, color);
+                        this.mapGraphics.setPixel(x, y, color);
+                    }
+                }
+            }
+        }
+
+        this.staleMapData = this.map.getData().clone();
+        this.staleScreenData = new byte[SCREEN_WIDTH][SCREEN_HEIGHT][];
+        for (int x = 0; x < SCREEN_WIDTH; x++) {
+            for (int y = 0; y < SCREEN_HEIGHT; y++) {
+                this.staleScreenData[x][y] = this.screenMaps[x][y].getData().clone();
+            }
+        }
+    }
+
+    @Benchmark
+    public ClientsideMap mapLegacyLoop() {
+        this.resetMap();
+        legacyRenderOnto(this.mapGraphics, this.map);
+        return this.map;
+    }
+
+    @Benchmark
+    public ClientsideMap mapMismatch() {
+        this.resetMap();
+        this.mapGraphics.markDirty();
+        this.mapGraphics.renderOnto(this.map);
+        return this.map;
+    }
+
+    @Benchmark
+    public ClientsideMap[][] screenLegacyLoop() {
+        this.resetScreen();
+        legacyRenderOnto(this.screenGraphics, this.screenMaps);
+        return this.screenMaps;
+    }
+
+    @Benchmark
+    public ClientsideMap[][] screenMismatch() {
+        this.resetScreen();
+        this.screenGraphics.markDirty();
+        this.screenGraphics.renderOnto(null, this.screenMaps);
+        return this.screenMaps;
+    }
+
+    @Benchmark
+    public ClientsideMap mapIdle() {
+        this.mapGraphics.renderOnto(this.map);
+        return this.map;
+    }
+
+    @Benchmark
+    public ClientsideMap[][] screenIdle() {
+        this.screenGraphics.renderOnto(null, this.screenMaps);
+        return this.screenMaps;
+    }
+
+    private void resetMap() {
+        System.arraycopy(this.staleMapData, 0, this.map.getData(), 0, this.staleMapData.length);
+    }
+
+    private void resetScreen() {
+        for (int x = 0; x < SCREEN_WIDTH; x++) {
+            for (int y = 0; y < SCREEN_HEIGHT; y++) {
+                System.arraycopy(this.staleScreenData[x][y], 0, this.screenMaps[x][y].getData(), 0, 128 * 128);
+            }
+        }
+    }
+
+    // The ClientsideMapGraphics#renderOnto loop before it was rebuilt on Arrays.mismatch
+    private static void legacyRenderOnto(final ClientsideMapGraphics graphics, final ClientsideMap renderTarget) {
+        final Vec2 min = new Vec2(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        final Vec2 max = new Vec2(Integer.MIN_VALUE, Integer.MIN_VALUE);
+
+        for (int x = 0; x < 128; x++) {
+            for (int y = 0; y < 128; y++) {
+                if (graphics.getPixel(x, y) == renderTarget.getData()[x + y * 128]) {
+                    continue;
+                }
+
+                if (x < min.x) {
+                    min.x = x;
+                }
+                if (y < min.y) {
+                    min.y = y;
+                }
+                if (x + 1 > max.x) {
+                    max.x = x + 1;
+                }
+                if (y + 1 > max.y) {
+                    max.y = y + 1;
+                }
+
+                renderTarget.getData()[x + y * 128] = graphics.getPixel(x, y);
+            }
+        }
+
+        renderTarget.setX(min.x == Integer.MAX_VALUE ? 0 : min.x);
+        renderTarget.setY(min.y == Integer.MAX_VALUE ? 0 : min.y);
+        renderTarget.setWidth(max.x == Integer.MIN_VALUE ? 0 : max.x - min.x);
+        renderTarget.setHeight(max.y == Integer.MIN_VALUE ? 0 : max.y - min.y);
+    }
+
+    // The FastMapScreenGraphics#renderOnto loop before it was rebuilt on Arrays.mismatch
+    private static void legacyRenderOnto(final FastMapScreenGraphics graphics, final ClientsideMap[][] array) {
+        for (int col = 0; col < array.length; col++) {
+            for (int row = 0; row < array[col].length; row++) {
+                final ClientsideMap renderTarget = array[col][row];
+                final Vec2 min = new Vec2(Integer.MAX_VALUE, Integer.MAX_VALUE);
+                final Vec2 max = new Vec2(Integer.MIN_VALUE, Integer.MIN_VALUE);
+
+                for (int x = 0; x < 128; x++) {
+                    final int bigX = col * 128 + x;
+                    for (int y = 0; y < 128; y++) {
+                        final int bigY = row * 128 + y;
+                        if (graphics.getPixel(bigX, bigY) == renderTarget.getData()[x + y * 128]) {
+                            continue;
+                        }
+
+                        if (x < min.x) {
+                            min.x = x;
+                        }
+                        if (y < min.y) {
+                            min.y = y;
+                        }
+                        if (x + 1 > max.x) {
+                            max.x = x + 1;
+                        }
+                        if (y + 1 > max.y) {
+                            max.y = y + 1;
+                        }
+
+                        renderTarget.getData()[x + y * 128] = graphics.getPixel(bigX, bigY);
+                    }
+                }
+
+                renderTarget.setX(min.x == Integer.MAX_VALUE ? 0 : min.x);
+                renderTarget.setY(min.y == Integer.MAX_VALUE ? 0 : min.y);
+                renderTarget.setWidth(max.x == Integer.MIN_VALUE ? 0 : max.x - min.x);
+                renderTarget.setHeight(max.y == Integer.MIN_VALUE ? 0 : max.y - min.y);
+            }
+        }
+    }
+
+}
@@ -2,6 +2,7 @@ package dev.cerus.maps.version;
 
 import dev.cerus.maps.api.ClientsideMap;
 import dev.cerus.maps.api.Frame;
+import dev.cerus.maps.api.colormap.PaletteRemap;
 import dev.cerus.maps.api.version.PacketListener;
 import dev.cerus.maps.api.version.VersionAdapter;
 import dev.cerus.maps.util.ReflectionUtil;
@@ -39,7 +40,7 @@ public class VersionAdapter16R3 implements VersionAdapter {
     }
 
     @Override
-    public Object makeMapPacket(final boolean ignoreBounds, final ClientsideMap map) {
+    public Object makeMapPacket(final boolean ignoreBounds, final ClientsideMap map, final PaletteRemap remap) {
         return new PacketPlayOutMap(
                 map.getId(),
                 (byte) 0,
@@ -55,7 +56,7 @@ public class VersionAdapter16R3 implements VersionAdapter {
                                         : IChatBaseComponent.ChatSerializer.a(cursor.getCaptionString())
                         ))
                         .collect(Collectors.toList()),
-                map.getData(),
+                remap == null ? map.getData() : remap.apply(map.getData()),
                 ignoreBounds ? 0 : map.getX(),
                 ignoreBounds ? 0 : map.getY(),
                 ignoreBounds ? 128 : map.getWidth(),
@@ -2,6 +2,7 @@ package dev.cerus.maps.version;
 
 import dev.cerus.maps.api.ClientsideMap;
 import dev.cerus.maps.api.Frame;
+import dev.cerus.maps.api.colormap.PaletteRemap;
 import dev.cerus.maps.api.version.PacketListener;
 import dev.cerus.maps.api.version.VersionAdapter;
 import dev.cerus.maps.util.ReflectionUtil;
@@ -40,20 +41,21 @@ public class VersionAdapter18R1 implements VersionAdapter {
     }
 
     @Override
-    public Object makeMapPacket(final boolean ignoreBounds, final ClientsideMap map) {
+    public Object makeMapPacket(final boolean ignoreBounds, final ClientsideMap map, final PaletteRemap remap) {
         final int x = ignoreBounds ? 0 : map.getX();
         final int y = ignoreBounds ? 0 : map.getY();
         final int w = ignoreBounds ? 128 : Math.max(1, map.getWidth());
         final int h = ignoreBounds ? 128 : Math.max(1, map.getHeight());
 
         final byte[] data;
-        if (ignoreBounds) {
+        if (ignoreBounds && remap == null) {
             data = map.getData();
         } else {
             data = new byte[w * h];
             for (int xx = 0; xx < w; ++xx) {
                 for (int yy = 0; yy < h; ++yy) {
-                    data[xx + yy * w] = map.getData()[x + xx + (y + yy) * 128];
+                    final byte color = map.getData()[x + xx + (y + yy) * 128];
+                    data[xx + yy * w] = remap == null ? color : remap.apply(color);
                 }
             }
         }
@@ -1,5 +1,6 @@
 package dev.cerus.maps.api;
 
+import dev.cerus.maps.api.colormap.PaletteRemap;
 import dev.cerus.maps.api.graphics.MapGraphics;
 import dev.cerus.maps.api.version.VersionAdapter;
 import java.util.ArrayList;
@@ -11,6 +12,16 @@ import org.bukkit.entity.Player;
  */
 public class ClientsideMap {
 
+    /**
+     * The maximum amount of dirty regions a map keeps track of
+     */
+    public static final int MAX_DIRTY_REGIONS = 4;
+
+    /**
+     * Rough estimate of the amount of bytes that a map packet takes up without its pixel data
+     */
+    public static final int PACKET_OVERHEAD = 16;
+
     private static final int WIDTH = 128;
     private static int COUNTER = Integer.MIN_VALUE;
 
@@ -21,6 +32,7 @@ public class ClientsideMap {
     private int y;
     private int width;
     private int height;
+    private List<Bounds> dirtyRegions;
     private boolean dirtyMarkers;
 
     public ClientsideMap() {
@@ -31,6 +43,7 @@ public class ClientsideMap {
         this.id = id;
         this.data = new byte[WIDTH * WIDTH];
         this.markers = new ArrayList<>();
+        this.dirtyRegions = List.of();
     }
 
     /**
@@ -54,6 +67,18 @@ public class ClientsideMap {
         versionAdapter.sendPacket(player, versionAdapter.makeMapPacket(ignoreBounds, this));
     }
 
+    /**
+     * Send this map to a player whose client uses a different palette
+     *
+     * @param versionAdapter The version adapter
+     * @param ignoreBounds   True if the whole map should be sent
+     * @param remap          The remap table that is applied to the colors, or null
+     * @param player         The player
+     */
+    public void sendTo(final VersionAdapter versionAdapter, final boolean ignoreBounds, final PaletteRemap remap, final Player player) {
+        versionAdapter.sendPacket(player, versionAdapter.makeMapPacket(ignoreBounds, this, remap));
+    }
+
     /**
      * Draw a graphics buffer onto this map
      *
@@ -135,6 +160,20 @@ public class ClientsideMap {
         this.height = height;
     }
 
+    /**
+     * Get the changed areas of this map. The regions do not overlap and all of them are within the bounds
+     * of this map (x, y, width and height).
+     *
+     * @return The changed areas, empty if there are no changes
+     */
+    public List<Bounds> getDirtyRegions() {
+        return this.dirtyRegions;
+    }
+
+    public void setDirtyRegions(final List<Bounds> dirtyRegions) {
+        this.dirtyRegions = List.copyOf(dirtyRegions);
+    }
+
     public List<Marker> getMarkers() {
         return List.copyOf(this.markers);
     }
@@ -147,4 +186,35 @@ public class ClientsideMap {
         this.dirtyMarkers = dirtyMarkers;
     }
 
+    /**
+     * A rectangular area of a map
+     *
+     * @param x      The x coordinate
+     * @param y      The y coordinate
+     * @param width  The width
+     * @param height The height
+     */
+    public record Bounds(int x, int y, int width, int height) {
+
+        public int area() {
+            return this.width * this.height;
+        }
+
+        /**
+         * Get the smallest area that contains this and the other area
+         *
+         * @param other The other area
+         *
+         * @return The union of both areas
+         */
+        public Bounds union(final Bounds other) {
+            final int minX = Math.min(this.x, other.x);
+            final int minY = Math.min(this.y, other.y);
+            final int maxX = Math.max(this.x + this.width, other.x + other.width);
+            final int maxY = Math.max(this.y + this.height, other.y + other.height);
+            return new Bounds(minX, minY, maxX - minX, maxY - minY);
+        }
+
+    }
+
 }
@@ -1,12 +1,18 @@
 package dev.cerus.maps.api;
 
+import dev.cerus.maps.api.colormap.PaletteRemap;
+import dev.cerus.maps.api.colormap.mapping.Version;
+import dev.cerus.maps.api.graphics.BufferLayout;
 import dev.cerus.maps.api.graphics.FastMapScreenGraphics;
 import dev.cerus.maps.api.graphics.MapGraphics;
 import dev.cerus.maps.api.graphics.MapScreenGraphics;
 import dev.cerus.maps.api.version.VersionAdapter;
 import dev.cerus.maps.util.HitBoxCalculatorUtil;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -17,6 +23,9 @@ import org.bukkit.entity.Player;
  */
 public class MapScreen {
 
+    // Rough estimate of the amount of bytes that a single marker takes up in a map packet
+    private static final int MARKER_SIZE = 8;
+
     private final int id;
     private final VersionAdapter versionAdapter;
     private final ClientsideMap[][] mapArray;
@@ -113,6 +122,38 @@ public class MapScreen {
      * @param players The receivers
      */
     public void sendMaps(final boolean full, final Player... players) {
+        this.sendMaps(full, List.of(new Audience(null, players)));
+    }
+
+    /**
+     * Send the map data to players whose clients use the palette of a different Minecraft version.
+     * The colors are remapped while the packets are built, the screen is only rendered once.
+     *
+     * @param full          True if full map data should be sent
+     * @param clientVersion The Minecraft version of the receivers
+     * @param players       The receivers
+     */
+    public void sendMaps(final boolean full, final Version clientVersion, final Player... players) {
+        this.sendMaps(full, Map.of(clientVersion, Arrays.asList(players)));
+    }
+
+    /**
+     * Send the map data to players of different Minecraft versions. The screen is only rendered once and
+     * every version gets its own remapped packets.
+     *
+     * @param full             True if full map data should be sent
+     * @param playersByVersion The receivers, grouped by the Minecraft version of their client
+     */
+    public void sendMaps(final boolean full, final Map<Version, ? extends Collection<? extends Player>> playersByVersion) {
+        final List<Audience> audiences = new ArrayList<>();
+        playersByVersion.forEach((version, players) -> {
+            final PaletteRemap remap = PaletteRemap.forClient(version);
+            audiences.add(new Audience(remap.isIdentity() ? null : remap, players.toArray(Player[]::new)));
+        });
+        this.sendMaps(full, audiences);
+    }
+
+    private void sendMaps(final boolean full, final List<Audience> audiences) {
         // Render the buffer
         this.graphics.renderOnto(this, this.mapArray);
 
@@ -125,15 +166,73 @@ public class MapScreen {
                     continue;
                 }
 
-                final Object packet = this.versionAdapter.makeMapPacket(full, map);
-                for (final Player player : players) {
-                    this.versionAdapter.sendPacket(player, packet);
+                for (final Audience audience : audiences) {
+                    if (!full && this.shouldSplit(map)) {
+                        this.sendRegions(map, audience);
+                    } else {
+                        final Object packet = this.versionAdapter.makeMapPacket(full, map, audience.remap());
+                        for (final Player player : audience.players()) {
+                            this.versionAdapter.sendPacket(player, packet);
+                        }
+                    }
                 }
                 map.setDirtyMarkers(false);
             }
         }
     }
 
+    /**
+     * Check if sending the dirty regions of a map separately is cheaper than sending its bounds
+     *
+     * @param map The map
+     *
+     * @return True if the regions should be sent separately
+     */
+    private boolean shouldSplit(final ClientsideMap map) {
+        final List<ClientsideMap.Bounds> regions = map.getDirtyRegions();
+        if (regions.size() < 2) {
+            return false;
+        }
+
+        // Every packet contains all the markers of the map
+        final int overhead = ClientsideMap.PACKET_OVERHEAD + map.getMarkers().size() * MARKER_SIZE;
+        int splitCost = 0;
+        for (final ClientsideMap.Bounds region : regions) {
+            splitCost += overhead + region.area();
+        }
+        return splitCost < overhead + map.getWidth() * map.getHeight();
+    }
+
+    /**
+     * Send every dirty region of a map in its own packet
+     *
+     * @param map      The map
+     * @param audience The receivers
+     */
+    private void sendRegions(final ClientsideMap map, final Audience audience) {
+        final int x = map.getX();
+        final int y = map.getY();
+        final int width = map.getWidth();
+        final int height = map.getHeight();
+
+        for (final ClientsideMap.Bounds region : map.getDirtyRegions()) {
+            map.setX(region.x());
+            map.setY(region.y());
+            map.setWidth(region.width());
+            map.setHeight(region.height());
+
+            final Object packet = this.versionAdapter.makeMapPacket(false, map, audience.remap());
+            for (final Player player : audience.players()) {
+                this.versionAdapter.sendPacket(player, packet);
+            }
+        }
+
+        map.setX(x);
+        map.setY(y);
+        map.setWidth(width);
+        map.setHeight(height);
+    }
+
     public void sendMarkers(final Player... players) {
         for (int x = 0; x < this.width; x++) {
             for (int y = 0; y < this.height; y++) {
@@ -234,6 +333,17 @@ public class MapScreen {
                 : new MapScreenGraphics(this.width, this.height);
     }
 
+    /**
+     * Use fast graphics with a specific buffer layout
+     * <p>
+     * {@link BufferLayout#TILED} is the fastest option when sending maps frequently.
+     *
+     * @param layout The layout of the graphics buffer
+     */
+    public void useFastGraphics(final BufferLayout layout) {
+        this.graphics = new FastMapScreenGraphics(this.width, this.height, layout);
+    }
+
     public MapGraphics<MapScreen, ClientsideMap[][]> getGraphics() {
         return this.graphics;
     }
@@ -317,4 +427,8 @@ public class MapScreen {
 
     }
 
+    // Receivers that share a palette
+    private record Audience(PaletteRemap remap, Player[] players) {
+    }
+
 }
@@ -1,9 +1,9 @@
 package dev.cerus.maps.api.colormap;
 
+import dev.cerus.maps.api.colormap.mapping.Version;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A container for map colors
@@ -12,9 +12,80 @@ public class ColorMap {
 
     // Color array, capped at 256 because that's the maximum amount of possible colors at the moment
     private final Color[] colors = new Color[256];
+    private volatile CompositeTable compositeTable;
+    private volatile ConversionCache conversionCache;
+    private volatile NearestColorIndex nearestColorIndex;
+    private volatile boolean nearestColorIndexBuilt;
+    private final AtomicReferenceArray<float[]> paletteCoordinates = new AtomicReferenceArray<>(ColorMetric.values().length);
+    private final Version version;
+    private volatile RgbTables rgbTables;
+
+    /**
+     * Create an empty color map that does not belong to any palette version
+     */
+    public ColorMap() {
+        this(null);
+    }
+
+    /**
+     * Create an empty color map
+     *
+     * @param version The palette version the colors of this map belong to
+     */
+    public ColorMap(final Version version) {
+        this.version = version;
+    }
 
     public void putColor(final Color color) {
         this.colors[this.b2i(color.mapColor)] = color;
+        // The palette changed, the lookup structures have to be recalculated
+        this.compositeTable = null;
+        this.conversionCache = null;
+        this.nearestColorIndexBuilt = false;
+        this.rgbTables = null;
+        for (int i = 0; i < this.paletteCoordinates.length(); i++) {
+            this.paletteCoordinates.set(i, null);
+        }
+    }
+
+    /**
+     * Get the alpha composite lookup table of this color map. The table is created on first use
+     * with {@link CompositeTable#getDefaultLevels()} alpha levels.
+     *
+     * @return The composite table
+     */
+    public CompositeTable getCompositeTable() {
+        CompositeTable table = this.compositeTable;
+        if (table == null) {
+            synchronized (this) {
+                table = this.compositeTable;
+                if (table == null) {
+                    table = new CompositeTable(this, CompositeTable.getDefaultLevels());
+                    this.compositeTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Get the rgb conversion cache of this color map. The cache is created on first use
+     * with a memory budget of {@link ConversionCache#getDefaultBudget()} bytes.
+     *
+     * @return The conversion cache
+     */
+    public ConversionCache getConversionCache() {
+        ConversionCache cache = this.conversionCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = this.conversionCache;
+                if (cache == null) {
+                    cache = new ConversionCache(this, ConversionCache.getDefaultBudget());
+                    this.conversionCache = cache;
+                }
+            }
+        }
+        return cache;
     }
 
     /**
@@ -48,9 +119,67 @@ public class ColorMap {
      * @return Java color or java color id 0 (or null)
      */
     public java.awt.Color mapColorToRgb(final byte color) {
-        return Optional.ofNullable(this.getById(color)).map(c -> c.javaColor)
-                .orElse(Optional.ofNullable(getById(0)).map(c -> c.javaColor)
-                        .orElse(null));
+        final Color mapColor = this.getById(color);
+        if (mapColor != null) {
+            return mapColor.javaColor;
+        }
+        final Color fallback = this.getById(0);
+        return fallback == null ? null : fallback.javaColor;
+    }
+
+    /**
+     * Get the rgb value of a color
+     *
+     * @param color Map color id
+     *
+     * @return The packed rgb value (0xRRGGBB) or -1 if the color is unknown
+     */
+    public int getRgb(final byte color) {
+        return this.rgbTables().rgb[color & 0xFF];
+    }
+
+    /**
+     * Get the packed rgb values (0xRRGGBB) of all colors, indexed by the unsigned map color id. Unknown colors are -1.
+     * <p>
+     * The array is shared and must not be modified. It's replaced when the colors of this map change.
+     *
+     * @return The rgb table
+     */
+    public int[] getRgbTable() {
+        return this.rgbTables().rgb;
+    }
+
+    /**
+     * Get the red values of all colors, indexed by the unsigned map color id. Unknown colors are 0.
+     * <p>
+     * The array is shared and must not be modified. It's replaced when the colors of this map change.
+     *
+     * @return The red table, values are unsigned
+     */
+    public byte[] getRedTable() {
+        return this.rgbTables().red;
+    }
+
+    /**
+     * Get the green values of all colors, indexed by the unsigned map color id. Unknown colors are 0.
+     * <p>
+     * The array is shared and must not be modified. It's replaced when the colors of this map change.
+     *
+     * @return The green table, values are unsigned
+     */
+    public byte[] getGreenTable() {
+        return this.rgbTables().green;
+    }
+
+    /**
+     * Get the blue values of all colors, indexed by the unsigned map color id. Unknown colors are 0.
+     * <p>
+     * The array is shared and must not be modified. It's replaced when the colors of this map change.
+     *
+     * @return The blue table, values are unsigned
+     */
+    public byte[] getBlueTable() {
+        return this.rgbTables().blue;
     }
 
     /**
@@ -63,16 +192,138 @@ public class ColorMap {
      * @return Color or transparent color (0) (or null)
      */
     public Color rgbToMapColor(final int r, final int g, final int b) {
-        return Arrays.stream(this.colors)
-                .filter(Objects::nonNull)
-                .filter(color -> color.mapColor() > 3)
-                .min(Comparator.comparingDouble(value -> this.calcDist(value, r, g, b)))
-                .orElse(this.getById(0));
+        return this.getById(this.rgbToMap(r, g, b));
+    }
+
+    /**
+     * Find the closest map color by RGB
+     * <p>
+     * Uses an index that is built on first use, lookups are cheap and thread safe.
+     *
+     * @param r Red (0 - 255)
+     * @param g Green (0 - 255)
+     * @param b Blue (0 - 255)
+     *
+     * @return The closest opaque map color or 0 if there are no opaque colors
+     */
+    public byte rgbToMap(final int r, final int g, final int b) {
+        final NearestColorIndex index = this.nearestColorIndex();
+        return index == null ? 0 : index.nearest(this.clamp(r), this.clamp(g), this.clamp(b));
     }
 
-    private double calcDist(final Color clr, final int r, final int g, final int b) {
-        final java.awt.Color color = clr.javaColor();
-        return Math.sqrt(Math.pow(r - color.getRed(), 2) + Math.pow(g - color.getGreen(), 2) + Math.pow(b - color.getBlue(), 2));
+    /**
+     * Find color by RGB using the specified color metric
+     *
+     * @param r      Red
+     * @param g      Green
+     * @param b      Blue
+     * @param metric The metric that's used to measure the distance between colors
+     *
+     * @return Color or transparent color (0) (or null)
+     */
+    public Color rgbToMapColor(final int r, final int g, final int b, final ColorMetric metric) {
+        return this.getById(this.rgbToMap(r, g, b, metric));
+    }
+
+    /**
+     * Find the closest map color by RGB using the specified color metric
+     * <p>
+     * The palette is converted into the coordinate space of the metric once, so every lookup only
+     * needs to convert the specified color. Use {@link #getConversionCache()} if you need to convert a lot of colors.
+     *
+     * @param r      Red (0 - 255)
+     * @param g      Green (0 - 255)
+     * @param b      Blue (0 - 255)
+     * @param metric The metric that's used to measure the distance between colors
+     *
+     * @return The closest opaque map color or 0 if there are no opaque colors
+     */
+    public byte rgbToMap(final int r, final int g, final int b, final ColorMetric metric) {
+        if (metric == ColorMetric.RGB) {
+            return this.rgbToMap(r, g, b);
+        }
+
+        final float[] palette = this.paletteCoordinates(metric);
+        final float[] target = new float[3];
+        metric.toCoordinates(this.clamp(r), this.clamp(g), this.clamp(b), target);
+        int best = 0;
+        float bestDist = Float.MAX_VALUE;
+        for (int i = 4; i < 256; i++) {
+            final float d0 = palette[i * 3] - target[0];
+            if (Float.isNaN(d0)) {
+                // Unknown color
+                continue;
+            }
+            final float d1 = palette[i * 3 + 1] - target[1];
+            final float d2 = palette[i * 3 + 2] - target[2];
+            final float dist = d0 * d0 + d1 * d1 + d2 * d2;
+            if (dist < bestDist) {
+                best = i;
+                bestDist = dist;
+            }
+        }
+        return (byte) best;
+    }
+
+    // Converts the palette into the coordinate space of a metric, unknown colors are NaN
+    private float[] paletteCoordinates(final ColorMetric metric) {
+        float[] coordinates = this.paletteCoordinates.get(metric.ordinal());
+        if (coordinates == null) {
+            coordinates = new float[256 * 3];
+            final float[] out = new float[3];
+            final int[] rgb = this.getRgbTable();
+            for (int i = 0; i < 256; i++) {
+                if (rgb[i] == -1) {
+                    Arrays.fill(coordinates, i * 3, i * 3 + 3, Float.NaN);
+                    continue;
+                }
+                metric.toCoordinates(rgb[i] >> 16 & 0xFF, rgb[i] >> 8 & 0xFF, rgb[i] & 0xFF, out);
+                System.arraycopy(out, 0, coordinates, i * 3, 3);
+            }
+            this.paletteCoordinates.set(metric.ordinal(), coordinates);
+        }
+        return coordinates;
+    }
+
+    private RgbTables rgbTables() {
+        RgbTables tables = this.rgbTables;
+        if (tables == null) {
+            // Multiple threads might build the tables at the same time, but they all produce the same result
+            final int[] rgb = new int[256];
+            final byte[] red = new byte[256];
+            final byte[] green = new byte[256];
+            final byte[] blue = new byte[256];
+            for (int i = 0; i < 256; i++) {
+                final Color color = this.colors[i];
+                if (color == null) {
+                    rgb[i] = -1;
+                    continue;
+                }
+                rgb[i] = color.javaColor.getRGB() & 0xFFFFFF;
+                red[i] = (byte) color.javaColor.getRed();
+                green[i] = (byte) color.javaColor.getGreen();
+                blue[i] = (byte) color.javaColor.getBlue();
+            }
+            tables = new RgbTables(rgb, red, green, blue);
+            this.rgbTables = tables;
+        }
+        return tables;
+    }
+
+    private NearestColorIndex nearestColorIndex() {
+        if (!this.nearestColorIndexBuilt) {
+            synchronized (this) {
+                if (!this.nearestColorIndexBuilt) {
+                    this.nearestColorIndex = NearestColorIndex.build(this.getRgbTable());
+                    this.nearestColorIndexBuilt = true;
+                }
+            }
+        }
+        return this.nearestColorIndex;
+    }
+
+    private int clamp(final int component) {
+        return Math.max(0, Math.min(255, component));
     }
 
     private int b2i(int b) {
@@ -86,6 +337,19 @@ public class ColorMap {
         return this.colors;
     }
 
+    /**
+     * Get the palette version of this color map. This is the version of the most recent mapping that was
+     * applied, so all Minecraft versions that share a palette will return the same version.
+     *
+     * @return The palette version or null if this map was not created from the mappings
+     */
+    public Version getVersion() {
+        return this.version;
+    }
+
+    private record RgbTables(int[] rgb, byte[] red, byte[] green, byte[] blue) {
+    }
+
     public record Color(byte mapColor, java.awt.Color javaColor) {
 
         @Override
@@ -18,13 +18,12 @@ import org.bukkit.Bukkit;
 
 /**
  * Utility class for color maps
+ * <p>
+ * Everything is loaded lazily: the mappings are read when the first color map is requested,
+ * and {@link #current()} and {@link #latest()} are only created when they are first used.
  */
 public class ColorMaps {
 
-    private static final MappingTree MAPPING_TREE = loadMappings();
-    private static final ColorMap latest = newColorMap(Version.MAX);
-    private static final ColorMap current = newColorMap(currentVersion());
-
     private ColorMaps() {
     }
 
@@ -34,7 +33,7 @@ public class ColorMaps {
      * @return Color map for latest version
      */
     public static ColorMap latest() {
-        return latest;
+        return LatestHolder.LATEST;
     }
 
     /**
@@ -43,7 +42,7 @@ public class ColorMaps {
      * @return Color map for current version
      */
     public static ColorMap current() {
-        return current;
+        return CurrentHolder.CURRENT;
     }
 
     /**
@@ -54,18 +53,51 @@ public class ColorMaps {
      * @return a new color map
      */
     public static ColorMap newColorMap(final Version version) {
-        return MAPPING_TREE.createColorMap(version);
+        return MappingHolder.MAPPING_TREE.createColorMap(version);
     }
 
     /**
-     * Load the current color mappings into memory
+     * Load the color mappings into memory. The mappings are read from the binary palette file
+     * that is generated at build time, colormap.json is only used if that file is missing.
      *
      * @return a mapping tree
      */
     private static MappingTree loadMappings() {
+        List<MappingEntry> mappingEntries = null;
+        try (final InputStream in = ColorMaps.class.getClassLoader().getResourceAsStream(PaletteFile.RESOURCE)) {
+            if (in != null) {
+                mappingEntries = PaletteFile.read(in);
+            }
+        } catch (final IOException e) {
+            System.err.println("Failed to load palettes, falling back to colormap.json");
+        }
+
+        if (mappingEntries == null) {
+            try (final InputStream in = ColorMaps.class.getClassLoader().getResourceAsStream("colormap.json")) {
+                mappingEntries = parseJsonMappings(in);
+            } catch (final IOException | NullPointerException e) {
+                System.err.println("Failed to load colors");
+                mappingEntries = List.of();
+            }
+        }
+
+        final MappingTree tree = new MappingTree();
+        tree.addEntries(mappingEntries);
+        return tree;
+    }
+
+    /**
+     * Parse the color mappings from json
+     *
+     * @param in The json input
+     *
+     * @return The parsed mappings
+     *
+     * @throws IOException If the input could not be read
+     */
+    static List<MappingEntry> parseJsonMappings(final InputStream in) throws IOException {
         final List<MappingEntry> mappingEntries = new ArrayList<>();
-        try (final InputStream in = ColorMaps.class.getClassLoader().getResourceAsStream("colormap.json");
-             final InputStreamReader reader = new InputStreamReader(in)) {
+        try (final InputStreamReader reader = new InputStreamReader(in)) {
             final JsonObject obj = new JsonParser().parse(reader).getAsJsonObject();
 
             // Iterate versions
@@ -97,13 +129,8 @@ public class ColorMaps {
                 }
                 mappingEntries.add(new MappingEntry(version, colorList));
             }
-        } catch (final IOException | NullPointerException e) {
-            System.err.println("Failed to load colors");
         }
-
-        final MappingTree tree = new MappingTree();
-        tree.addEntries(mappingEntries);
-        return tree;
+        return mappingEntries;
     }
 
     /**
@@ -168,5 +195,24 @@ public class ColorMaps {
         }
     }
 
+    // Lazy holders, the JVM initializes them on first access
+
+    private static final class MappingHolder {
+
+        private static final MappingTree MAPPING_TREE = loadMappings();
+
+    }
+
+    private static final class LatestHolder {
+
+        private static final ColorMap LATEST = newColorMap(Version.MAX);
+
+    }
+
+    private static final class CurrentHolder {
+
+        private static final ColorMap CURRENT = newColorMap(currentVersion());
+
+    }
 
 }
@@ -0,0 +1,97 @@
+package dev.cerus.maps.api.colormap;
+
+/**
+ * Decides how the distance between two colors is measured when looking for the closest map color
+ * <p>
+ * Every metric converts colors into a coordinate space in which the plain euclidean distance is used.
+ */
+public enum ColorMetric {
+
+    /**
+     * Plain euclidean distance of the RGB values. Fastest, but hues can be off.
+     */
+    RGB {
+        @Override
+        public void toCoordinates(final int r, final int g, final int b, final float[] out) {
+            out[0] = r;
+            out[1] = g;
+            out[2] = b;
+        }
+    },
+
+    /**
+     * Euclidean distance of the RGB values, weighted by how sensitive the human eye is to each channel (2, 4, 3)
+     */
+    WEIGHTED_RGB {
+        @Override
+        public void toCoordinates(final int r, final int g, final int b, final float[] out) {
+            out[0] = r * SQRT_2;
+            out[1] = g * 2f;
+            out[2] = b * SQRT_3;
+        }
+    },
+
+    /**
+     * Euclidean distance in the CIE L*a*b* color space (CIE76), using the D65 white point
+     */
+    CIELAB {
+        @Override
+        public void toCoordinates(final int r, final int g, final int b, final float[] out) {
+            final float lr = LINEAR[r];
+            final float lg = LINEAR[g];
+            final float lb = LINEAR[b];
+            final float x = labF((0.4124564f * lr + 0.3575761f * lg + 0.1804375f * lb) / 0.95047f);
+            final float y = labF(0.2126729f * lr + 0.7151522f * lg + 0.0721750f * lb);
+            final float z = labF((0.0193339f * lr + 0.1191920f * lg + 0.9503041f * lb) / 1.08883f);
+            out[0] = 116f * y - 16f;
+            out[1] = 500f * (x - y);
+            out[2] = 200f * (y - z);
+        }
+    },
+
+    /**
+     * Euclidean distance in the Oklab color space. Usually gives the best results for photos and gradients.
+     * See <a href="https://bottosson.github.io/posts/oklab/">https://bottosson.github.io/posts/oklab/</a>
+     */
+    OKLAB {
+        @Override
+        public void toCoordinates(final int r, final int g, final int b, final float[] out) {
+            final float lr = LINEAR[r];
+            final float lg = LINEAR[g];
+            final float lb = LINEAR[b];
+            final float l = (float) Math.cbrt(0.4122214708f * lr + 0.5363325363f * lg + 0.0514459929f * lb);
+            final float m = (float) Math.cbrt(0.2119034982f * lr + 0.6806995451f * lg + 0.1073969566f * lb);
+            final float s = (float) Math.cbrt(0.0883024619f * lr + 0.2817188376f * lg + 0.6299787005f * lb);
+            out[0] = 0.2104542553f * l + 0.7936177850f * m - 0.0040720468f * s;
+            out[1] = 1.9779984951f * l - 2.4285922050f * m + 0.4505937099f * s;
+            out[2] = 0.0259040371f * l + 0.7827717662f * m - 0.8086757660f * s;
+        }
+    };
+
+    private static final float SQRT_2 = (float) Math.sqrt(2);
+    private static final float SQRT_3 = (float) Math.sqrt(3);
+    // sRGB component (0 - 255) to linear light (0 - 1)
+    private static final float[] LINEAR = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            final double c = i / 255d;
+            LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+    }
+
+    /**
+     * Convert a color into the coordinate space of this metric
+     *
+     * @param r   Red (0 - 255)
+     * @param g   Green (0 - 255)
+     * @param b   Blue (0 - 255)
+     * @param out The array to write the three coordinates into
+     */
+    public abstract void toCoordinates(int r, int g, int b, float[] out);
+
+    private static float labF(final float t) {
+        return t > 216f / 24389f ? (float) Math.cbrt(t) : (24389f / 27f * t + 16f) / 116f;
+    }
+
+}
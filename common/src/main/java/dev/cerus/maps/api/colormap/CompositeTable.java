@@ -0,0 +1,147 @@
+package dev.cerus.maps.api.colormap;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Lookup table for alpha compositing of map colors
+ * <p>
+ * Alpha values are quantized to a fixed amount of levels. Each level contains the composite
+ * of every possible source and destination color, which makes compositing a single array load.
+ * Levels are calculated lazily when they are first needed, or all at once with {@link #buildAll()}.
+ * <p>
+ * Takes up 64KB of memory per level.
+ */
+public final class CompositeTable {
+
+    /**
+     * The amount of alpha levels that new tables are created with, unless specified otherwise
+     */
+    public static final int DEFAULT_LEVELS = 32;
+
+    private static volatile int defaultLevels = DEFAULT_LEVELS;
+
+    private final ColorMap colorMap;
+    private final int levels;
+    private final byte[] table;
+    private final AtomicIntegerArray built;
+
+    public CompositeTable(final ColorMap colorMap, final int levels) {
+        if (levels < 2) {
+            throw new IllegalArgumentException("levels < 2");
+        }
+        this.colorMap = colorMap;
+        this.levels = levels;
+        this.table = new byte[levels << 16];
+        this.built = new AtomicIntegerArray(levels);
+    }
+
+    /**
+     * Get the amount of alpha levels that new tables are created with
+     *
+     * @return The amount of alpha levels
+     */
+    public static int getDefaultLevels() {
+        return defaultLevels;
+    }
+
+    /**
+     * Set the amount of alpha levels that new tables are created with. Tables that
+     * already exist are not affected.
+     *
+     * @param levels The amount of alpha levels (at least 2)
+     */
+    public static void setDefaultLevels(final int levels) {
+        if (levels < 2) {
+            throw new IllegalArgumentException("levels < 2");
+        }
+        defaultLevels = levels;
+    }
+
+    /**
+     * Composite two colors. Neither of the colors should be transparent.
+     *
+     * @param source The new color
+     * @param dest   The old color (e.g. background)
+     * @param alpha  The alpha (0 - 1)
+     *
+     * @return The composited color
+     */
+    public byte composite(final byte source, final byte dest, final float alpha) {
+        final int level = this.level(alpha);
+        if (this.built.get(level) == 0) {
+            this.build(level);
+        }
+        return this.table[(level << 16) | ((source & 0xFF) << 8) | (dest & 0xFF)];
+    }
+
+    /**
+     * Calculate all the alpha levels in parallel
+     */
+    public void buildAll() {
+        IntStream.range(0, this.levels).parallel().forEach(this::build);
+    }
+
+    /**
+     * Get the amount of alpha levels that have been calculated so far
+     *
+     * @return The amount of calculated levels
+     */
+    public int getBuiltLevels() {
+        int count = 0;
+        for (int i = 0; i < this.levels; i++) {
+            count += this.built.get(i);
+        }
+        return count;
+    }
+
+    public int getLevels() {
+        return this.levels;
+    }
+
+    private int level(final float alpha) {
+        return Math.round(Math.max(0f, Math.min(1f, alpha)) * (this.levels - 1));
+    }
+
+    private void build(final int level) {
+        if (this.built.get(level) != 0) {
+            return;
+        }
+
+        final float alpha = level / (float) (this.levels - 1);
+        final int[] rgb = this.paletteRgb();
+        final int offset = level << 16;
+        for (int src = 0; src < 256; src++) {
+            for (int dst = 0; dst < 256; dst++) {
+                final int index = offset | (src << 8) | dst;
+                if (rgb[src] == -1 || rgb[dst] == -1) {
+                    // Unknown colors can't be composited
+                    this.table[index] = (byte) (rgb[src] == -1 ? dst : src);
+                    continue;
+                }
+                this.table[index] = this.colorMap.rgbToMap(
+                        composite(rgb[src] >> 16 & 0xFF, rgb[dst] >> 16 & 0xFF, alpha),
+                        composite(rgb[src] >> 8 & 0xFF, rgb[dst] >> 8 & 0xFF, alpha),
+                        composite(rgb[src] & 0xFF, rgb[dst] & 0xFF, alpha));
+            }
+        }
+        // Multiple threads might have built the same level, but they all produce the same result
+        this.built.set(level, 1);
+    }
+
+    // Collects the rgb values of every color, -1 marks unknown and transparent colors
+    private int[] paletteRgb() {
+        final int[] rgb = this.colorMap.getRgbTable().clone();
+        Arrays.fill(rgb, 0, 4, -1);
+        return rgb;
+    }
+
+    // Same formula as MapGraphics#composite
+    private static int composite(final int comp1, final int comp2, final float a) {
+        final float c1 = comp1 / 255f;
+        final float c2 = comp2 / 255f;
+        return (int) ((c1 * a + c2 * (1f - a)) * 255f);
+    }
+
+}
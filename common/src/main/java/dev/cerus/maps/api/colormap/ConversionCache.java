@@ -0,0 +1,178 @@
+package dev.cerus.maps.api.colormap;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread safe rgb to map color cache of a single color map
+ * <p>
+ * The rgb cube of every color metric is split into blocks of 4096 colors which are calculated at once
+ * when they are first needed. The amount of blocks that are kept in memory is limited by a memory budget,
+ * once the budget is exceeded blocks are evicted with the clock (second chance) algorithm.
+ * <p>
+ * If a {@link PersistentColorTable} is set for a metric, lookups for that metric are answered by the table instead.
+ */
+public final class ConversionCache {
+
+    /**
+     * The memory budget that new caches are created with, unless specified otherwise (16MB, one full metric)
+     */
+    public static final long DEFAULT_BUDGET = 16L * 1024 * 1024;
+
+    private static final int BLOCK_BITS = 12;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCKS = (256 * 256 * 256) / BLOCK_SIZE;
+
+    private static volatile long defaultBudget = DEFAULT_BUDGET;
+
+    private final ColorMap colorMap;
+    private final int maxBlocks;
+    private final AtomicReferenceArray<byte[]> blocks = new AtomicReferenceArray<>(ColorMetric.values().length * BLOCKS);
+    // Second chance bits, races only cost an extra chance or a premature eviction
+    private final byte[] referenced = new byte[ColorMetric.values().length * BLOCKS];
+    private final AtomicReferenceArray<PersistentColorTable> persistentTables = new AtomicReferenceArray<>(ColorMetric.values().length);
+    // The slots of the cached blocks, the clock hand moves over these
+    private final int[] frames;
+    private volatile int usedFrames;
+    private int clockHand;
+
+    public ConversionCache(final ColorMap colorMap, final long budget) {
+        if (budget < BLOCK_SIZE) {
+            throw new IllegalArgumentException("budget < " + BLOCK_SIZE);
+        }
+        this.colorMap = colorMap;
+        this.maxBlocks = (int) Math.min(this.blocks.length(), budget / BLOCK_SIZE);
+        this.frames = new int[this.maxBlocks];
+    }
+
+    /**
+     * Get the memory budget that new caches are created with
+     *
+     * @return The budget in bytes
+     */
+    public static long getDefaultBudget() {
+        return defaultBudget;
+    }
+
+    /**
+     * Set the memory budget that new caches are created with. Caches that already exist are not affected.
+     *
+     * @param budget The budget in bytes (at least 4096)
+     */
+    public static void setDefaultBudget(final long budget) {
+        if (budget < BLOCK_SIZE) {
+            throw new IllegalArgumentException("budget < " + BLOCK_SIZE);
+        }
+        defaultBudget = budget;
+    }
+
+    /**
+     * Find the closest map color of an rgb color. The color is calculated and cached if it's not cached yet.
+     *
+     * @param r      Red (0 - 255)
+     * @param g      Green (0 - 255)
+     * @param b      Blue (0 - 255)
+     * @param metric The metric that's used to measure the distance between colors
+     *
+     * @return The closest map color
+     */
+    public byte rgbToMap(final int r, final int g, final int b, final ColorMetric metric) {
+        if ((r | g | b) >>> 8 != 0) {
+            throw new IllegalArgumentException("Color values need to be between 0 and 255");
+        }
+
+        final PersistentColorTable table = this.persistentTables.get(metric.ordinal());
+        if (table != null) {
+            return table.get(r, g, b);
+        }
+
+        final int index = (r << 16) | (g << 8) | b;
+        final int slot = metric.ordinal() * BLOCKS + (index >>> BLOCK_BITS);
+        byte[] block = this.blocks.get(slot);
+        if (block == null) {
+            block = this.load(slot, metric);
+        } else if (this.referenced[slot] == 0) {
+            this.referenced[slot] = 1;
+        }
+        return block[index & (BLOCK_SIZE - 1)];
+    }
+
+    /**
+     * Use a persistent table for all lookups with its metric
+     *
+     * @param table The table, needs to belong to the color map of this cache
+     */
+    public void setPersistentTable(final PersistentColorTable table) {
+        if (table.getColorMap() != this.colorMap) {
+            throw new IllegalArgumentException("Table belongs to a different color map");
+        }
+        this.persistentTables.set(table.getMetric().ordinal(), table);
+    }
+
+    /**
+     * Get the persistent table of a metric
+     *
+     * @param metric The metric
+     *
+     * @return The table or null
+     */
+    public PersistentColorTable getPersistentTable(final ColorMetric metric) {
+        return this.persistentTables.get(metric.ordinal());
+    }
+
+    /**
+     * Get the amount of blocks that are currently cached
+     *
+     * @return The amount of cached blocks
+     */
+    public int getLoadedBlocks() {
+        return this.usedFrames;
+    }
+
+    /**
+     * Get the maximum amount of blocks that will be cached
+     *
+     * @return The maximum amount of cached blocks
+     */
+    public int getMaxBlocks() {
+        return this.maxBlocks;
+    }
+
+    private byte[] load(final int slot, final ColorMetric metric) {
+        // Calculate the whole block at once. Every block covers all blue values of 16 green values.
+        final int block = slot % BLOCKS;
+        final int r = block >>> 4;
+        final int fromG = (block & 15) << 4;
+        final byte[] colors = new byte[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            colors[i] = this.colorMap.rgbToMap(r, fromG + (i >>> 8), i & 0xFF, metric);
+        }
+
+        synchronized (this) {
+            final byte[] existing = this.blocks.get(slot);
+            if (existing != null) {
+                // Another thread was faster
+                return existing;
+            }
+
+            final int frame;
+            if (this.usedFrames < this.maxBlocks) {
+                frame = this.usedFrames++;
+            } else {
+                // Move the hand until we find a block that was not used since the last time we've been here.
+                // Lookups can set the bits again while we're moving, so we give up after a full turn.
+                for (int i = 0; i < this.maxBlocks && this.referenced[this.frames[this.clockHand]] != 0; i++) {
+                    this.referenced[this.frames[this.clockHand]] = 0;
+                    this.clockHand = (this.clockHand + 1) % this.maxBlocks;
+                }
+                frame = this.clockHand;
+                this.blocks.set(this.frames[frame], null);
+                this.clockHand = (this.clockHand + 1) % this.maxBlocks;
+            }
+            this.frames[frame] = slot;
+            this.referenced[slot] = 0;
+            this.blocks.set(slot, colors);
+        }
+        return colors;
+    }
+
+}
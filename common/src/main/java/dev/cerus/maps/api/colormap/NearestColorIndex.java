@@ -0,0 +1,135 @@
+package dev.cerus.maps.api.colormap;
+
+import java.util.Arrays;
+
+/**
+ * Finds the closest palette color for RGB values
+ * <p>
+ * The RGB cube is split into 16x16x16 cells. Every cell stores the palette colors that could possibly be
+ * the closest color for any point inside of the cell, which usually leaves only a handful of candidates
+ * to check per lookup. The index is immutable and can be used from multiple threads.
+ */
+final class NearestColorIndex {
+
+    private static final int CELL_BITS = 4;
+    private static final int CELLS = 1 << CELL_BITS;
+    private static final int CELL_SIZE = 256 / CELLS;
+
+    private final int[] cellStart;
+    private final byte[] candidateIds;
+    private final int[] candidateRgb;
+
+    private NearestColorIndex(final int[] cellStart, final byte[] candidateIds, final int[] candidateRgb) {
+        this.cellStart = cellStart;
+        this.candidateIds = candidateIds;
+        this.candidateRgb = candidateRgb;
+    }
+
+    /**
+     * Build an index for the opaque colors of a palette. Ids 0 - 3 are transparent and will never be returned.
+     *
+     * @param palette The packed rgb values of the palette, indexed by unsigned map color. Unknown colors are -1.
+     *
+     * @return The index or null if the palette does not contain opaque colors
+     */
+    static NearestColorIndex build(final int[] palette) {
+        final int[] ids = new int[palette.length];
+        final int[] rgb = new int[palette.length];
+        int count = 0;
+        for (int i = 4; i < palette.length; i++) {
+            if (palette[i] != -1) {
+                ids[count] = i;
+                rgb[count++] = palette[i];
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        final int[] cellStart = new int[CELLS * CELLS * CELLS + 1];
+        final int[] minDist = new int[count];
+        int[] candidates = new int[count * 8];
+        int size = 0;
+        for (int cell = 0; cell < CELLS * CELLS * CELLS; cell++) {
+            final int rMin = (cell >> (CELL_BITS * 2)) * CELL_SIZE;
+            final int gMin = ((cell >> CELL_BITS) & (CELLS - 1)) * CELL_SIZE;
+            final int bMin = (cell & (CELLS - 1)) * CELL_SIZE;
+
+            // The closest color can't be further away than the smallest worst case distance of any color
+            int limit = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                final int r = rgb[i] >> 16 & 0xFF;
+                final int g = rgb[i] >> 8 & 0xFF;
+                final int b = rgb[i] & 0xFF;
+                minDist[i] = square(axisMin(r, rMin)) + square(axisMin(g, gMin)) + square(axisMin(b, bMin));
+                limit = Math.min(limit, square(axisMax(r, rMin)) + square(axisMax(g, gMin)) + square(axisMax(b, bMin)));
+            }
+
+            cellStart[cell] = size;
+            for (int i = 0; i < count; i++) {
+                if (minDist[i] <= limit) {
+                    if (size == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, size * 2);
+                    }
+                    candidates[size++] = i;
+                }
+            }
+        }
+        cellStart[CELLS * CELLS * CELLS] = size;
+
+        final byte[] candidateIds = new byte[size];
+        final int[] candidateRgb = new int[size];
+        for (int i = 0; i < size; i++) {
+            candidateIds[i] = (byte) ids[candidates[i]];
+            candidateRgb[i] = rgb[candidates[i]];
+        }
+        return new NearestColorIndex(cellStart, candidateIds, candidateRgb);
+    }
+
+    /**
+     * Find the closest color by squared euclidean distance. If multiple colors are equally
+     * close, the one with the lowest id wins.
+     *
+     * @param r Red (0 - 255)
+     * @param g Green (0 - 255)
+     * @param b Blue (0 - 255)
+     *
+     * @return The closest map color
+     */
+    byte nearest(final int r, final int g, final int b) {
+        final int cell = ((r >> CELL_BITS) << (CELL_BITS * 2)) | ((g >> CELL_BITS) << CELL_BITS) | (b >> CELL_BITS);
+        final int end = this.cellStart[cell + 1];
+        int best = this.cellStart[cell];
+        int bestDist = Integer.MAX_VALUE;
+        for (int i = best; i < end; i++) {
+            final int rgb = this.candidateRgb[i];
+            final int dr = (rgb >> 16 & 0xFF) - r;
+            final int dg = (rgb >> 8 & 0xFF) - g;
+            final int db = (rgb & 0xFF) - b;
+            final int dist = dr * dr + dg * dg + db * db;
+            if (dist < bestDist) {
+                best = i;
+                bestDist = dist;
+            }
+        }
+        return this.candidateIds[best];
+    }
+
+    // Distance between a value and the closest value of a cell on one axis
+    private static int axisMin(final int value, final int cellMin) {
+        if (value < cellMin) {
+            return cellMin - value;
+        }
+        return Math.max(0, value - (cellMin + CELL_SIZE - 1));
+    }
+
+    // Distance between a value and the furthest value of a cell on one axis
+    private static int axisMax(final int value, final int cellMin) {
+        return Math.max(Math.abs(value - cellMin), Math.abs(value - (cellMin + CELL_SIZE - 1)));
+    }
+
+    private static int square(final int i) {
+        return i * i;
+    }
+
+}
@@ -0,0 +1,132 @@
+package dev.cerus.maps.api.colormap;
+
+import dev.cerus.maps.api.colormap.mapping.MappingEntry;
+import dev.cerus.maps.api.colormap.mapping.Version;
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary format for the color mappings
+ * <p>
+ * The mappings are converted from colormap.json at build time (see {@link #main(String[])}), so the plugin
+ * doesn't need to parse json at runtime. Layout:
+ * <pre>
+ * int   magic ("MPAL")
+ * byte  format
+ * short entry count
+ * per entry:
+ *   short major, short minor, short patch
+ *   short color count
+ *   per color: byte id, byte red, byte green, byte blue
+ * </pre>
+ */
+public final class PaletteFile {
+
+    /**
+     * Name of the generated resource
+     */
+    public static final String RESOURCE = "palettes.bin";
+
+    private static final int MAGIC = 0x4D50414C; // MPAL
+    private static final int FORMAT = 1;
+
+    private PaletteFile() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Converts colormap.json into the binary format. Used by the build.
+     *
+     * @param args The path of the json file and the path of the output file
+     *
+     * @throws IOException If a file could not be read or written
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            // Runs inside of the Maven JVM, System.exit() would take the whole build down without a report
+            throw new IllegalArgumentException("Usage: PaletteFile <colormap.json> <output>");
+        }
+
+        final List<MappingEntry> entries;
+        try (final InputStream in = Files.newInputStream(Path.of(args[0]))) {
+            entries = ColorMaps.parseJsonMappings(in);
+        }
+        final Path output = Path.of(args[1]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (final OutputStream out = Files.newOutputStream(output)) {
+            write(entries, out);
+        }
+        System.out.println("Wrote " + entries.size() + " palette versions to " + output);
+    }
+
+    /**
+     * Write mappings in the binary format
+     *
+     * @param entries The mappings
+     * @param out     The stream to write to
+     *
+     * @throws IOException If the mappings could not be written
+     */
+    static void write(final List<MappingEntry> entries, final OutputStream out) throws IOException {
+        final DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+        dataOut.writeInt(MAGIC);
+        dataOut.writeByte(FORMAT);
+        dataOut.writeShort(entries.size());
+        for (final MappingEntry entry : entries) {
+            dataOut.writeShort(entry.version().major());
+            dataOut.writeShort(entry.version().minor());
+            dataOut.writeShort(entry.version().patch());
+            dataOut.writeShort(entry.colors().size());
+            for (final ColorMap.Color color : entry.colors()) {
+                dataOut.writeByte(color.mapColor());
+                dataOut.writeByte(color.javaColor().getRed());
+                dataOut.writeByte(color.javaColor().getGreen());
+                dataOut.writeByte(color.javaColor().getBlue());
+            }
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * Read mappings in the binary format
+     *
+     * @param in The stream to read from
+     *
+     * @return The mappings
+     *
+     * @throws IOException If the mappings could not be read or are in an unknown format
+     */
+    static List<MappingEntry> read(final InputStream in) throws IOException {
+        final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+        if (dataIn.readInt() != MAGIC || dataIn.readUnsignedByte() != FORMAT) {
+            throw new IOException("Unknown palette format");
+        }
+
+        final int entryCount = dataIn.readUnsignedShort();
+        final List<MappingEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            final Version version = new Version(dataIn.readUnsignedShort(), dataIn.readUnsignedShort(), dataIn.readUnsignedShort());
+            final int colorCount = dataIn.readUnsignedShort();
+            final List<ColorMap.Color> colors = new ArrayList<>(colorCount);
+            for (int c = 0; c < colorCount; c++) {
+                final byte id = dataIn.readByte();
+                colors.add(new ColorMap.Color(id, new Color(dataIn.readUnsignedByte(), dataIn.readUnsignedByte(), dataIn.readUnsignedByte())));
+            }
+            entries.add(new MappingEntry(version, colors));
+        }
+        return entries;
+    }
+
+}
@@ -0,0 +1,126 @@
+package dev.cerus.maps.api.colormap;
+
+import dev.cerus.maps.api.colormap.mapping.Version;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Translates map color ids from one palette to another
+ * <p>
+ * Clients only know the colors of their own palette, so a buffer that was rendered with a newer palette
+ * shows wrong colors on older clients. A remap table replaces every id with the id of the same color in the
+ * target palette, or with the closest color if the target palette doesn't contain it. Applying it is a
+ * single array load per pixel, so one rendered buffer can be served to clients of every version.
+ */
+public final class PaletteRemap {
+
+    private static final Map<Key, PaletteRemap> CACHE = new ConcurrentHashMap<>();
+
+    private final byte[] table;
+    private final boolean identity;
+
+    private PaletteRemap(final byte[] table) {
+        this.table = table;
+        boolean identity = true;
+        for (int i = 0; i < 256 && identity; i++) {
+            identity = table[i] == (byte) i;
+        }
+        this.identity = identity;
+    }
+
+    /**
+     * Get the remap table between the palettes of two Minecraft versions. Tables are cached.
+     *
+     * @param from The version the colors were rendered for
+     * @param to   The version of the client
+     *
+     * @return The remap table
+     */
+    public static PaletteRemap between(final Version from, final Version to) {
+        return CACHE.computeIfAbsent(new Key(from, to), key -> between(ColorMaps.newColorMap(from), ColorMaps.newColorMap(to)));
+    }
+
+    /**
+     * Get the remap table from the palette of this server to the palette of a client
+     *
+     * @param clientVersion The version of the client
+     *
+     * @return The remap table
+     */
+    public static PaletteRemap forClient(final Version clientVersion) {
+        return between(ColorMaps.current().getVersion(), clientVersion);
+    }
+
+    /**
+     * Create a remap table between two color maps. Transparent colors (ids 0 - 3) are kept as they are.
+     *
+     * @param from The color map the colors were rendered with
+     * @param to   The color map of the client
+     *
+     * @return A new remap table
+     */
+    public static PaletteRemap between(final ColorMap from, final ColorMap to) {
+        final int[] fromRgb = from.getRgbTable();
+        final int[] toRgb = to.getRgbTable();
+        final byte[] table = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            if (i < 4 || fromRgb[i] == toRgb[i]) {
+                table[i] = (byte) i;
+            } else if (fromRgb[i] == -1) {
+                // We don't know this color either
+                table[i] = 0;
+            } else {
+                table[i] = to.rgbToMap(fromRgb[i] >> 16 & 0xFF, fromRgb[i] >> 8 & 0xFF, fromRgb[i] & 0xFF);
+            }
+        }
+        return new PaletteRemap(table);
+    }
+
+    /**
+     * Remap a single color
+     *
+     * @param color The color
+     *
+     * @return The remapped color
+     */
+    public byte apply(final byte color) {
+        return this.table[color & 0xFF];
+    }
+
+    /**
+     * Remap a buffer
+     *
+     * @param data The buffer, will not be modified
+     *
+     * @return A remapped copy of the buffer
+     */
+    public byte[] apply(final byte[] data) {
+        final byte[] result = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = this.table[data[i] & 0xFF];
+        }
+        return result;
+    }
+
+    /**
+     * Check if this table leaves every color unchanged. Callers can skip remapping in that case.
+     *
+     * @return True if this table doesn't change anything
+     */
+    public boolean isIdentity() {
+        return this.identity;
+    }
+
+    /**
+     * Get a copy of the underlying table
+     *
+     * @return The table, indexed by unsigned color id
+     */
+    public byte[] getTable() {
+        return this.table.clone();
+    }
+
+    private record Key(Version from, Version to) {
+    }
+
+}
@@ -0,0 +1,165 @@
+package dev.cerus.maps.api.colormap;
+
+import dev.cerus.maps.api.colormap.mapping.Version;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Complete rgb to map color lookup table that is stored in a file
+ * <p>
+ * The table contains the closest map color of every possible rgb color (16MB) for one palette and one color metric.
+ * It's written once and memory-mapped read-only afterwards, so lookups don't need any warm-up and the operating
+ * system can share the pages between all servers on the same host.
+ * <p>
+ * Files start with a small header that identifies the palette and the metric. Files that don't match the
+ * requested palette are regenerated.
+ */
+public final class PersistentColorTable {
+
+    private static final int MAGIC = 0x4D415043; // MAPC
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    private static final int TABLE_SIZE = 256 * 256 * 256;
+
+    private final ColorMap colorMap;
+    private final ColorMetric metric;
+    private final ByteBuffer table;
+
+    private PersistentColorTable(final ColorMap colorMap, final ColorMetric metric, final ByteBuffer table) {
+        this.colorMap = colorMap;
+        this.metric = metric;
+        this.table = table;
+    }
+
+    /**
+     * Load the table of a color map from a folder. The table will be generated and written to the folder
+     * if it doesn't exist yet or if it's outdated, which can take a few seconds.
+     *
+     * @param folder   The folder that contains the tables
+     * @param colorMap The color map
+     * @param metric   The metric that's used to find the closest colors
+     *
+     * @return The loaded table
+     *
+     * @throws IOException If the table could not be read or written
+     */
+    public static PersistentColorTable load(final Path folder, final ColorMap colorMap, final ColorMetric metric) throws IOException {
+        final long paletteHash = paletteHash(colorMap);
+        final Path file = folder.resolve(fileName(colorMap.getVersion(), metric, paletteHash));
+        if (!isValid(file, metric, paletteHash)) {
+            write(folder, file, colorMap, metric, paletteHash);
+        }
+
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new PersistentColorTable(colorMap, metric, channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, TABLE_SIZE));
+        }
+    }
+
+    /**
+     * Find the closest map color of an rgb color
+     *
+     * @param r Red (0 - 255)
+     * @param g Green (0 - 255)
+     * @param b Blue (0 - 255)
+     *
+     * @return The closest map color
+     */
+    public byte get(final int r, final int g, final int b) {
+        return this.table.get((r << 16) | (g << 8) | b);
+    }
+
+    public ColorMap getColorMap() {
+        return this.colorMap;
+    }
+
+    public ColorMetric getMetric() {
+        return this.metric;
+    }
+
+    private static boolean isValid(final Path file, final ColorMetric metric, final long paletteHash) throws IOException {
+        if (!Files.exists(file) || Files.size(file) != HEADER_SIZE + TABLE_SIZE) {
+            return false;
+        }
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // Keep reading until the header is complete
+            }
+            header.flip();
+            return header.remaining() == HEADER_SIZE
+                    && header.getInt() == MAGIC
+                    && header.getInt() == FORMAT
+                    && header.getInt() == metric.ordinal()
+                    && header.getLong() == paletteHash;
+        }
+    }
+
+    private static void write(final Path folder,
+                              final Path file,
+                              final ColorMap colorMap,
+                              final ColorMetric metric,
+                              final long paletteHash) throws IOException {
+        final byte[] table = new byte[TABLE_SIZE];
+        IntStream.range(0, 256).parallel().forEach(r -> {
+            for (int g = 0; g < 256; g++) {
+                for (int b = 0; b < 256; b++) {
+                    table[(r << 16) | (g << 8) | b] = colorMap.rgbToMap(r, g, b, metric);
+                }
+            }
+        });
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(FORMAT)
+                .putInt(metric.ordinal())
+                .putLong(paletteHash)
+                .flip();
+
+        // Write to a temporary file first so other servers never map a half written table
+        Files.createDirectories(folder);
+        final Path temp = Files.createTempFile(folder, file.getFileName().toString(), ".tmp");
+        try {
+            try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                final ByteBuffer data = ByteBuffer.wrap(table);
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException ex) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String fileName(final Version version, final ColorMetric metric, final long paletteHash) {
+        final String name = version == null
+                ? "custom-" + Long.toHexString(paletteHash)
+                : version.major() + "." + version.minor() + "." + version.patch();
+        return "colors-" + name + "-" + metric.name().toLowerCase() + ".bin";
+    }
+
+    // Identifies a palette, unknown colors are hashed as -1
+    private static long paletteHash(final ColorMap colorMap) {
+        long hash = 1125899906842597L;
+        for (final int rgb : colorMap.getRgbTable()) {
+            hash = 31 * hash + rgb;
+        }
+        return hash;
+    }
+
+}
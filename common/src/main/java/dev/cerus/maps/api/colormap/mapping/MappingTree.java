@@ -32,10 +32,18 @@ public class MappingTree {
      * @return a new color map
      */
     public ColorMap createColorMap(final Version version) {
-        final List<ColorMap.Color> baseList = this.entryList.iterator().next().copyColorList();
-        this.getAllForVer(version).forEach(entry -> entry.applyTo(baseList));
+        final MappingEntry base = this.entryList.iterator().next();
+        final List<ColorMap.Color> baseList = base.copyColorList();
+        // The palette version is the version of the most recent entry that actually changed something
+        Version paletteVersion = base.version();
+        for (final MappingEntry entry : this.getAllForVer(version)) {
+            entry.applyTo(baseList);
+            if (!entry.colors().isEmpty()) {
+                paletteVersion = entry.version();
+            }
+        }
 
-        final ColorMap colorMap = new ColorMap();
+        final ColorMap colorMap = new ColorMap(paletteVersion);
         baseList.forEach(colorMap::putColor);
         return colorMap;
     }
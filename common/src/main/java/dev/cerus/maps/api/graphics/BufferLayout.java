@@ -0,0 +1,108 @@
+package dev.cerus.maps.api.graphics;
+
+/**
+ * Describes how the pixels of a graphics buffer are laid out in its direct access array
+ */
+public enum BufferLayout {
+
+    /**
+     * Legacy layout. Uses max(width, height) as the row stride and thus allocates
+     * max(width, height)^2 bytes. Only use this if you depend on the old index formula
+     * ({@code x + y * Math.max(w, h)}) when accessing the direct access data.
+     */
+    SQUARE {
+        @Override
+        public int index(final int x, final int y, final int width, final int height) {
+            return x + y * Math.max(width, height);
+        }
+
+        @Override
+        public int size(final int width, final int height) {
+            return Math.max(width, height) * Math.max(width, height);
+        }
+
+        @Override
+        public int run(final int x, final int width) {
+            return width - x;
+        }
+    },
+
+    /**
+     * Tightly packed layout. Rows are stored one after another with the width as the row stride.
+     */
+    PACKED {
+        @Override
+        public int index(final int x, final int y, final int width, final int height) {
+            return x + y * width;
+        }
+
+        @Override
+        public int size(final int width, final int height) {
+            return width * height;
+        }
+
+        @Override
+        public int run(final int x, final int width) {
+            return width - x;
+        }
+    },
+
+    /**
+     * Tiled layout. The buffer is split into 128x128 tiles which are stored one after another (row by row).
+     * The pixels of a tile are stored in the same order as the data of a {@link dev.cerus.maps.api.ClientsideMap},
+     * which allows map screens to sync each map with a single block copy.
+     * <p>
+     * Buffers that are not a multiple of 128 wide or high are padded to full tiles.
+     */
+    TILED {
+        @Override
+        public int index(final int x, final int y, final int width, final int height) {
+            final int tile = (y >> 7) * ((width + 127) >> 7) + (x >> 7);
+            return (tile << 14) + ((y & 127) << 7) + (x & 127);
+        }
+
+        @Override
+        public int size(final int width, final int height) {
+            return ((width + 127) >> 7) * ((height + 127) >> 7) * 128 * 128;
+        }
+
+        @Override
+        public int run(final int x, final int width) {
+            return Math.min(128 - (x & 127), width - x);
+        }
+    };
+
+    /**
+     * Calculate the array index of a pixel
+     *
+     * @param x      The x coordinate
+     * @param y      The y coordinate
+     * @param width  The width of the buffer
+     * @param height The height of the buffer
+     *
+     * @return The array index
+     */
+    public abstract int index(int x, int y, int width, int height);
+
+    /**
+     * Calculate the required array size for a buffer
+     *
+     * @param width  The width of the buffer
+     * @param height The height of the buffer
+     *
+     * @return The array size
+     */
+    public abstract int size(int width, int height);
+
+    /**
+     * Get the amount of pixels that are stored contiguously in the array starting at the
+     * specified x coordinate and going right
+     *
+     * @param x     The x coordinate
+     * @param width The width of the buffer
+     *
+     * @return The amount of contiguous pixels in the row
+     */
+    public abstract int run(int x, int width);
+
+}
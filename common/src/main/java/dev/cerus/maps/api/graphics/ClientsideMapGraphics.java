@@ -1,7 +1,8 @@
 package dev.cerus.maps.api.graphics;
 
 import dev.cerus.maps.api.ClientsideMap;
-import dev.cerus.maps.util.Vec2;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Graphics implementation for the clientside map
@@ -12,6 +13,8 @@ public class ClientsideMapGraphics extends MapGraphics<ClientsideMap, Void> {
     private static final int WIDTH = 128;
 
     private final byte[] data = new byte[WIDTH * WIDTH];
+    private final DirtyTracker dirtyTracker = new DirtyTracker(WIDTH, WIDTH);
+    private ClientsideMap lastTarget;
 
     @Override
     public byte setPixel(final int x, final int y, final float alpha, final byte color) {
@@ -31,7 +34,8 @@ public class ClientsideMapGraphics extends MapGraphics<ClientsideMap, Void> {
     // Set pixel directly, skip any checks
     private byte setPixelInternal(final int x, final int y, final byte color) {
         final byte bef = this.getPixel(x, y);
-        this.data[this.index(x, y, WIDTH, WIDTH)] = color;
+        this.data[x + y * WIDTH] = color;
+        this.dirtyTracker.mark(x, y);
         return bef;
     }
 
@@ -45,50 +49,228 @@ public class ClientsideMapGraphics extends MapGraphics<ClientsideMap, Void> {
 
     private byte getPixelDirect(final int x, final int y) {
         //return this.data[x * this.height + y];
-        return this.data[this.index(x, y, WIDTH, WIDTH)];
+        return this.data[x + y * WIDTH];
     }
 
     /**
      * Copies this buffer onto the buffer of a clientside map. Will also
      * calculate the bounds of the changed contents for optimal packet compression.
      * <p>
+     * Only the rows that were modified since the last call are compared. If nothing was
+     * modified the bounds of the map are simply reset.
+     * <p>
      * See {@link MapGraphics#renderOnto(Object, Object)}
      */
     @Override
     public void renderOnto(final ClientsideMap renderTarget, final Void unused) {
-        final Vec2 min = new Vec2(Integer.MAX_VALUE, Integer.MAX_VALUE);
-        final Vec2 max = new Vec2(Integer.MIN_VALUE, Integer.MIN_VALUE);
-
-        for (int x = 0; x < WIDTH; x++) {
-            for (int y = 0; y < WIDTH; y++) {
-                // No need to set the pixel if it's already the same color
-                if (this.getPixel(x, y) == renderTarget.getData()[x + y * WIDTH]) {
-                    continue;
-                }
+        if (renderTarget != this.lastTarget) {
+            // We don't know anything about the contents of the new target
+            this.dirtyTracker.markAll();
+            this.lastTarget = renderTarget;
+        }
 
-                // Check and set bounds accordingly
-                if (x < min.x) {
-                    min.x = x;
-                }
-                if (y < min.y) {
-                    min.y = y;
-                }
-                if (x + 1 > max.x) {
-                    max.x = x + 1;
-                }
-                if (y + 1 > max.y) {
-                    max.y = y + 1;
+        if (this.dirtyTracker.isDirty(0, 0)) {
+            renderTile(this.data, 0, WIDTH, this.dirtyTracker.getMinRow(0, 0), this.dirtyTracker.getMaxRow(0, 0), renderTarget);
+        } else {
+            clearBounds(renderTarget);
+        }
+        this.dirtyTracker.clear();
+    }
+
+    @Override
+    public void markDirty(final int x, final int y, final int width, final int height) {
+        this.dirtyTracker.mark(x, y, width, height);
+    }
+
+    /**
+     * Copies a 128x128 area of a buffer onto the buffer of a clientside map. Will also
+     * calculate the bounds of the changed contents for optimal packet compression.
+     * <p>
+     * Besides the overall bounds, the changes are split into up to {@link ClientsideMap#MAX_DIRTY_REGIONS}
+     * horizontal bands, so that far apart changes can be sent separately.
+     * <p>
+     * Only the rows in the specified range are compared, the caller has to make sure that
+     * all the other rows are unchanged.
+     *
+     * @param src          The source buffer
+     * @param offset       The index of the top left pixel of the area in the source buffer
+     * @param stride       The distance between two rows of the area in the source buffer
+     * @param fromRow      The first row that might have changed
+     * @param toRow        The last row that might have changed (inclusive)
+     * @param renderTarget The map to copy onto
+     */
+    static void renderTile(final byte[] src,
+                           final int offset,
+                           final int stride,
+                           final int fromRow,
+                           final int toRow,
+                           final ClientsideMap renderTarget) {
+        final byte[] dest = renderTarget.getData();
+
+        // Find the first changed row. Contiguous tiles can be checked with a single call.
+        int minY = -1;
+        int minX = -1;
+        if (stride == WIDTH) {
+            final int from = fromRow * WIDTH;
+            final int to = (toRow + 1) * WIDTH;
+            final int mismatch = Arrays.mismatch(src, offset + from, offset + to, dest, from, to);
+            if (mismatch != -1) {
+                minY = fromRow + mismatch / WIDTH;
+                minX = mismatch % WIDTH;
+            }
+        } else {
+            for (int y = fromRow; y <= toRow && minY == -1; y++) {
+                final int mismatch = mismatchRow(src, offset + y * stride, dest, y * WIDTH, 0, WIDTH);
+                if (mismatch != -1) {
+                    minY = y;
+                    minX = mismatch;
                 }
+            }
+        }
+        if (minY == -1) {
+            // No changes
+            clearBounds(renderTarget);
+            return;
+        }
+
+        // Find the last changed row
+        int maxY = minY;
+        for (int y = toRow; y > minY; y--) {
+            if (mismatchRow(src, offset + y * stride, dest, y * WIDTH, 0, WIDTH) != -1) {
+                maxY = y;
+                break;
+            }
+        }
+
+        // Collect the changed rows into bands. Rows are only merged into the current band if
+        // sending the unchanged rows in between is cheaper than sending another packet.
+        // The current band is x0 - x1, y0 - y1 (inclusive), closed bands are stored in the array.
+        final int[] bands = new int[(ClientsideMap.MAX_DIRTY_REGIONS + 1) * 4];
+        int count = 0;
+        int x0 = minX;
+        int x1 = lastMismatch(src, offset + minY * stride, dest, minY * WIDTH, minX, WIDTH - 1);
+        int y0 = minY;
+        int y1 = minY;
+        for (int y = minY + 1; y <= maxY; y++) {
+            final int srcRow = offset + y * stride;
+            final int destRow = y * WIDTH;
+
+            final int first = mismatchRow(src, srcRow, dest, destRow, 0, WIDTH);
+            if (first == -1) {
+                continue;
+            }
+            // Only the part of the row right of the current band needs to be searched for the last change.
+            // If there is none, the band's edge is used, which is too far right at worst and only makes merging more likely.
+            final int right = x1 < WIDTH - 1 ? mismatchRow(src, srcRow, dest, destRow, Math.max(first, x1 + 1), WIDTH) : -1;
+            final int last = right != -1 ? lastMismatch(src, srcRow, dest, destRow, right, WIDTH - 1) : x1;
 
-                renderTarget.getData()[x + y * WIDTH] = this.getPixel(x, y);
+            final int mergedArea = (Math.max(x1, last) - Math.min(x0, first) + 1) * (y - y0 + 1);
+            final int currentArea = (x1 - x0 + 1) * (y1 - y0 + 1);
+            if (mergedArea <= currentArea + (last - first + 1) + ClientsideMap.PACKET_OVERHEAD) {
+                x0 = Math.min(x0, first);
+                x1 = Math.max(x1, last);
+                y1 = y;
+            } else {
+                count = closeBand(bands, count, x0, x1, y0, y1);
+                x0 = first;
+                x1 = right != -1 ? last : lastMismatch(src, srcRow, dest, destRow, first, x1);
+                y0 = y;
+                y1 = y;
+            }
+        }
+        count = closeBand(bands, count, x0, x1, y0, y1);
+
+        // Copy the changed areas. A single full width band of a contiguous tile can be copied at once.
+        if (count == 1 && stride == WIDTH && bands[0] == 0 && bands[1] == WIDTH - 1) {
+            System.arraycopy(src, offset + bands[2] * WIDTH, dest, bands[2] * WIDTH, (bands[3] - bands[2] + 1) * WIDTH);
+        } else {
+            for (int i = 0; i < count * 4; i += 4) {
+                for (int y = bands[i + 2]; y <= bands[i + 3]; y++) {
+                    System.arraycopy(src, offset + y * stride + bands[i], dest, y * WIDTH + bands[i], bands[i + 1] - bands[i] + 1);
+                }
             }
         }
 
         // Set the calculated bounds
-        renderTarget.setX(min.x == Integer.MAX_VALUE ? 0 : min.x);
-        renderTarget.setY(min.y == Integer.MAX_VALUE ? 0 : min.y);
-        renderTarget.setWidth(max.x == Integer.MIN_VALUE ? 0 : max.x - min.x);
-        renderTarget.setHeight(max.y == Integer.MIN_VALUE ? 0 : max.y - min.y);
+        final ClientsideMap.Bounds[] regions = new ClientsideMap.Bounds[count];
+        int boundsX0 = WIDTH;
+        int boundsX1 = 0;
+        for (int i = 0; i < count; i++) {
+            final int band = i * 4;
+            regions[i] = new ClientsideMap.Bounds(bands[band], bands[band + 2],
+                    bands[band + 1] - bands[band] + 1, bands[band + 3] - bands[band + 2] + 1);
+            boundsX0 = Math.min(boundsX0, bands[band]);
+            boundsX1 = Math.max(boundsX1, bands[band + 1]);
+        }
+        renderTarget.setX(boundsX0);
+        renderTarget.setY(bands[2]);
+        renderTarget.setWidth(boundsX1 - boundsX0 + 1);
+        renderTarget.setHeight(bands[(count - 1) * 4 + 3] - bands[2] + 1);
+        renderTarget.setDirtyRegions(List.of(regions));
+    }
+
+    // Appends a band (x0, x1, y0, y1, inclusive) and merges the neighbouring bands that waste
+    // the least amount of bytes if there are too many. Returns the new amount of bands.
+    private static int closeBand(final int[] bands, final int count, final int x0, final int x1, final int y0, final int y1) {
+        bands[count * 4] = x0;
+        bands[count * 4 + 1] = x1;
+        bands[count * 4 + 2] = y0;
+        bands[count * 4 + 3] = y1;
+        if (count < ClientsideMap.MAX_DIRTY_REGIONS) {
+            return count + 1;
+        }
+
+        int best = 0;
+        int bestWaste = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            final int a = i * 4;
+            final int b = a + 4;
+            final int union = (Math.max(bands[a + 1], bands[b + 1]) - Math.min(bands[a], bands[b]) + 1) * (bands[b + 3] - bands[a + 2] + 1);
+            final int waste = union - area(bands, a) - area(bands, b);
+            if (waste < bestWaste) {
+                best = i;
+                bestWaste = waste;
+            }
+        }
+        final int a = best * 4;
+        final int b = a + 4;
+        bands[a] = Math.min(bands[a], bands[b]);
+        bands[a + 1] = Math.max(bands[a + 1], bands[b + 1]);
+        bands[a + 3] = bands[b + 3];
+        System.arraycopy(bands, b + 4, bands, b, (count - best - 1) * 4);
+        return count;
+    }
+
+    private static int area(final int[] bands, final int band) {
+        return (bands[band + 1] - bands[band] + 1) * (bands[band + 3] - bands[band + 2] + 1);
+    }
+
+    /**
+     * Resets the bounds and dirty regions of a map, which tells the screen that nothing has changed
+     *
+     * @param renderTarget The map
+     */
+    static void clearBounds(final ClientsideMap renderTarget) {
+        renderTarget.setX(0);
+        renderTarget.setY(0);
+        renderTarget.setWidth(0);
+        renderTarget.setHeight(0);
+        renderTarget.setDirtyRegions(List.of());
+    }
+
+    // Returns the first differing column in [from, to) or -1
+    private static int mismatchRow(final byte[] src, final int srcRow, final byte[] dest, final int destRow, final int from, final int to) {
+        final int mismatch = Arrays.mismatch(src, srcRow + from, srcRow + to, dest, destRow + from, destRow + to);
+        return mismatch == -1 ? -1 : from + mismatch;
+    }
+
+    // Returns the last differing column in [from, to], callers need to make sure that there is one
+    private static int lastMismatch(final byte[] src, final int srcRow, final byte[] dest, final int destRow, final int from, final int to) {
+        int x = to;
+        while (x > from && src[srcRow + x] == dest[destRow + x]) {
+            x--;
+        }
+        return x;
     }
 
     @Override
@@ -98,8 +280,19 @@ public class ClientsideMapGraphics extends MapGraphics<ClientsideMap, Void> {
 
     @Override
     public byte[] getDirectAccessData() {
-        //return this.data;
-        return null;
+        // The caller might write into the array
+        this.markDirty();
+        return this.data;
+    }
+
+    @Override
+    protected byte[] getDirectAccessDataUnmarked() {
+        return this.data;
+    }
+
+    @Override
+    public BufferLayout getLayout() {
+        return BufferLayout.PACKED;
     }
 
     @Override
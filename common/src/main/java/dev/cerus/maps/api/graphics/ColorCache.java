@@ -1,23 +1,45 @@
 package dev.cerus.maps.api.graphics;
 
 import dev.cerus.maps.api.colormap.ColorMaps;
-import java.awt.Color;
+import dev.cerus.maps.api.colormap.ColorMetric;
+import dev.cerus.maps.api.colormap.ConversionCache;
 
 /**
- * Lazy cache that maps rgb values to map colors
+ * Maps rgb values to map colors of the current color map
+ * <p>
+ * This is a shortcut for the {@link ConversionCache} of {@link ColorMaps#current()}. Use
+ * {@link dev.cerus.maps.api.colormap.ColorMap#getConversionCache()} to convert colors for other color maps.
  */
 public class ColorCache {
 
-    private static final byte[] mappedColors = new byte[256 * 256 * 256];
+    private static volatile ColorMetric defaultMetric = ColorMetric.RGB;
 
     private ColorCache() {
         throw new UnsupportedOperationException();
     }
 
     /**
-     * Retrieves a cached color. If the color is not cached it will be calculated and then cached.
+     * Get the metric that is used by {@link #rgbToMap(int, int, int)}
+     *
+     * @return The default color metric
+     */
+    public static ColorMetric getDefaultMetric() {
+        return defaultMetric;
+    }
+
+    /**
+     * Set the metric that is used by {@link #rgbToMap(int, int, int)}
+     *
+     * @param metric The new default color metric
+     */
+    public static void setDefaultMetric(final ColorMetric metric) {
+        defaultMetric = metric;
+    }
+
+    /**
+     * Retrieves a cached color using the default color metric. If the color is not cached it will be calculated and then cached.
      * <p>
-     * Takes up 16MB of memory when full
+     * See {@link ConversionCache} for memory usage
      *
      * @param r Red value
      * @param g Green value
@@ -26,12 +48,23 @@ public class ColorCache {
      * @return Cached map color
      */
     public static byte rgbToMap(final int r, final int g, final int b) {
-        final int index = new Color(r, g, b, 0).getRGB();
-        if (mappedColors[index] == 0) {
-            //mappedColors[index] = (byte) MapColor.rgbToMapColor(r, g, b).getId();
-            mappedColors[index] = ColorMaps.current().rgbToMapColor(r, g, b).mapColor();
-        }
-        return mappedColors[index];
+        return rgbToMap(r, g, b, defaultMetric);
+    }
+
+    /**
+     * Retrieves a cached color. If the color is not cached it will be calculated and then cached.
+     * <p>
+     * See {@link ConversionCache} for memory usage
+     *
+     * @param r      Red value
+     * @param g      Green value
+     * @param b      Blue value
+     * @param metric The metric that's used to measure the distance between colors
+     *
+     * @return Cached map color
+     */
+    public static byte rgbToMap(final int r, final int g, final int b, final ColorMetric metric) {
+        return ColorMaps.current().getConversionCache().rgbToMap(r, g, b, metric);
     }
 
 }
@@ -5,6 +5,13 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Supplier;
 
+/**
+ * Cache for alpha composites
+ *
+ * @deprecated Unbounded and not thread safe. Compositing uses {@link dev.cerus.maps.api.colormap.CompositeTable} now,
+ * this cache is no longer used.
+ */
+@Deprecated(forRemoval = true)
 public class CompositeColorCache {
 
     private static final Map<Long, Byte> COMPOSITIONS = new HashMap<>();
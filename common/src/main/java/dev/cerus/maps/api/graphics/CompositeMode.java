@@ -0,0 +1,116 @@
+package dev.cerus.maps.api.graphics;
+
+/**
+ * The Porter-Duff compositing modes.
+ * See <a href="https://en.wikipedia.org/wiki/Alpha_compositing">https://en.wikipedia.org/wiki/Alpha_compositing</a>
+ * <p>
+ * Map colors are either transparent or opaque, so every pixel falls into one of four regions: Only the source
+ * is opaque, only the destination is opaque, both are opaque or none is opaque. A mode simply decides what
+ * ends up in each of these regions. Pixels outside of the source count as transparent source pixels.
+ * <p>
+ * The source is the graphics instance that gets composited, the destination is the graphics instance
+ * that the source gets composited onto.
+ */
+public enum CompositeMode {
+
+    /**
+     * Clears everything
+     */
+    CLEAR(false, false, Overlap.CLEAR),
+    /**
+     * Only keeps the source
+     */
+    SRC(true, false, Overlap.SOURCE),
+    /**
+     * Only keeps the destination
+     */
+    DST(false, true, Overlap.DESTINATION),
+    /**
+     * Draws the source on top of the destination
+     */
+    SRC_OVER(true, true, Overlap.SOURCE),
+    /**
+     * Draws the destination on top of the source
+     */
+    DST_OVER(true, true, Overlap.DESTINATION),
+    /**
+     * Keeps the source where both overlap
+     */
+    SRC_IN(false, false, Overlap.SOURCE),
+    /**
+     * Keeps the destination where both overlap
+     */
+    DST_IN(false, false, Overlap.DESTINATION),
+    /**
+     * Keeps the source where the destination is transparent
+     */
+    SRC_OUT(true, false, Overlap.CLEAR),
+    /**
+     * Keeps the destination where the source is transparent
+     */
+    DST_OUT(false, true, Overlap.CLEAR),
+    /**
+     * Keeps the destination and draws the source on top of it where both overlap
+     */
+    SRC_ATOP(false, true, Overlap.SOURCE),
+    /**
+     * Keeps the source and draws the destination on top of it where both overlap
+     */
+    DST_ATOP(true, false, Overlap.DESTINATION),
+    /**
+     * Keeps everything except the parts where both overlap
+     */
+    XOR(true, true, Overlap.CLEAR);
+
+    private final boolean sourceOnly;
+    private final boolean destinationOnly;
+    private final Overlap overlap;
+
+    CompositeMode(final boolean sourceOnly, final boolean destinationOnly, final Overlap overlap) {
+        this.sourceOnly = sourceOnly;
+        this.destinationOnly = destinationOnly;
+        this.overlap = overlap;
+    }
+
+    /**
+     * Composite two pixels
+     *
+     * @param destination            The destination pixel
+     * @param source                 The source pixel
+     * @param destinationTransparent True if the destination pixel is transparent
+     * @param sourceTransparent      True if the source pixel is transparent
+     *
+     * @return The resulting pixel
+     */
+    public byte apply(final byte destination, final byte source, final boolean destinationTransparent, final boolean sourceTransparent) {
+        if (destinationTransparent && sourceTransparent) {
+            return 0;
+        } else if (destinationTransparent) {
+            return this.sourceOnly ? source : 0;
+        } else if (sourceTransparent) {
+            return this.destinationOnly ? destination : 0;
+        }
+        return switch (this.overlap) {
+            case SOURCE -> source;
+            case DESTINATION -> destination;
+            case CLEAR -> 0;
+        };
+    }
+
+    /**
+     * Returns true if this mode keeps destination pixels that are not covered by the source. Pixels
+     * outside of the source can only be skipped if this is true.
+     *
+     * @return True if the uncovered destination is kept
+     */
+    public boolean keepsDestinationOnly() {
+        return this.destinationOnly;
+    }
+
+    private enum Overlap {
+        CLEAR,
+        SOURCE,
+        DESTINATION
+    }
+
+}
@@ -0,0 +1,127 @@
+package dev.cerus.maps.api.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the modified rows of every 128x128 tile of a graphics buffer. This allows
+ * graphics implementations to skip the unchanged tiles when rendering.
+ */
+final class DirtyTracker {
+
+    private static final int TILE_SIZE = 128;
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int[] minRows;
+    private final int[] maxRows;
+    private boolean dirty;
+
+    DirtyTracker(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        final int tiles = this.tilesX * ((height + TILE_SIZE - 1) / TILE_SIZE);
+        this.minRows = new int[tiles];
+        this.maxRows = new int[tiles];
+        this.markAll();
+    }
+
+    /**
+     * Mark a single pixel as modified. Callers need to make sure that the coordinates are within bounds.
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     */
+    void mark(final int x, final int y) {
+        final int tile = (y / TILE_SIZE) * this.tilesX + (x / TILE_SIZE);
+        final int row = y % TILE_SIZE;
+        if (row < this.minRows[tile]) {
+            this.minRows[tile] = row;
+        }
+        if (row > this.maxRows[tile]) {
+            this.maxRows[tile] = row;
+        }
+        this.dirty = true;
+    }
+
+    /**
+     * Mark a rectangular area as modified. The area will be clipped to the bounds of the buffer.
+     *
+     * @param x      The x coordinate
+     * @param y      The y coordinate
+     * @param width  The width
+     * @param height The height
+     */
+    void mark(final int x, final int y, final int width, final int height) {
+        final int fromX = Math.max(0, x);
+        final int fromY = Math.max(0, y);
+        final int toX = Math.min(this.width, x + width) - 1;
+        final int toY = Math.min(this.height, y + height) - 1;
+        if (fromX > toX || fromY > toY) {
+            return;
+        }
+
+        for (int tileY = fromY / TILE_SIZE; tileY <= toY / TILE_SIZE; tileY++) {
+            final int minRow = Math.max(fromY, tileY * TILE_SIZE) % TILE_SIZE;
+            final int maxRow = Math.min(toY, tileY * TILE_SIZE + TILE_SIZE - 1) % TILE_SIZE;
+            for (int tileX = fromX / TILE_SIZE; tileX <= toX / TILE_SIZE; tileX++) {
+                final int tile = tileY * this.tilesX + tileX;
+                this.minRows[tile] = Math.min(this.minRows[tile], minRow);
+                this.maxRows[tile] = Math.max(this.maxRows[tile], maxRow);
+            }
+        }
+        this.dirty = true;
+    }
+
+    /**
+     * Mark the whole buffer as modified
+     */
+    void markAll() {
+        Arrays.fill(this.minRows, 0);
+        Arrays.fill(this.maxRows, TILE_SIZE - 1);
+        this.dirty = true;
+    }
+
+    /**
+     * Mark the whole buffer as unmodified
+     */
+    void clear() {
+        Arrays.fill(this.minRows, TILE_SIZE);
+        Arrays.fill(this.maxRows, -1);
+        this.dirty = false;
+    }
+
+    boolean isDirty() {
+        return this.dirty;
+    }
+
+    boolean isDirty(final int tileX, final int tileY) {
+        return this.minRows[tileY * this.tilesX + tileX] <= this.maxRows[tileY * this.tilesX + tileX];
+    }
+
+    /**
+     * Get the first modified row of a tile
+     *
+     * @param tileX The tile x
+     * @param tileY The tile y
+     *
+     * @return The first modified row (relative to the tile)
+     */
+    int getMinRow(final int tileX, final int tileY) {
+        return this.minRows[tileY * this.tilesX + tileX];
+    }
+
+    /**
+     * Get the last modified row of a tile
+     *
+     * @param tileX The tile x
+     * @param tileY The tile y
+     *
+     * @return The last modified row (relative to the tile)
+     */
+    int getMaxRow(final int tileX, final int tileY) {
+        return this.maxRows[tileY * this.tilesX + tileX];
+    }
+
+}
@@ -2,7 +2,6 @@ package dev.cerus.maps.api.graphics;
 
 import dev.cerus.maps.api.ClientsideMap;
 import dev.cerus.maps.api.MapScreen;
-import dev.cerus.maps.util.Vec2;
 
 /**
  * Graphics implementation for map screens
@@ -14,11 +13,20 @@ public class FastMapScreenGraphics extends MapGraphics<MapScreen, ClientsideMap[
     private final byte[] data;
     private final int width;
     private final int height;
+    private final BufferLayout layout;
+    private final DirtyTracker dirtyTracker;
+    private ClientsideMap[][] lastTarget;
 
     public FastMapScreenGraphics(final int w, final int h) {
+        this(w, h, BufferLayout.PACKED);
+    }
+
+    public FastMapScreenGraphics(final int w, final int h, final BufferLayout layout) {
         this.width = w * 128;
         this.height = h * 128;
-        this.data = new byte[Math.max(this.width, this.height) * Math.max(this.width, this.height)];
+        this.layout = layout;
+        this.data = new byte[layout.size(this.width, this.height)];
+        this.dirtyTracker = new DirtyTracker(this.width, this.height);
     }
 
     @Override
@@ -39,7 +47,8 @@ public class FastMapScreenGraphics extends MapGraphics<MapScreen, ClientsideMap[
     // Set pixel directly, skip any checks
     private byte setPixelInternal(final int x, final int y, final byte color) {
         final byte bef = this.getPixel(x, y);
-        this.data[this.index(x, y, this.width, this.height)] = color;
+        this.data[this.layout.index(x, y, this.width, this.height)] = color;
+        this.dirtyTracker.mark(x, y);
         return bef;
     }
 
@@ -53,72 +62,78 @@ public class FastMapScreenGraphics extends MapGraphics<MapScreen, ClientsideMap[
 
     private byte getPixelDirect(final int x, final int y) {
         //return this.data[x * this.height + y];
-        return this.data[this.index(x, y, this.width, this.height)];
+        return this.data[this.layout.index(x, y, this.width, this.height)];
     }
 
+    /**
+     * Copies the modified tiles of this buffer onto the maps of the screen. Tiles that were not
+     * modified since the last call are not compared at all, their bounds are simply reset.
+     * <p>
+     * See {@link MapGraphics#renderOnto(Object, Object)}
+     */
     @Override
     public void renderOnto(final MapScreen caller, final ClientsideMap[][] array) {
+        if (array != this.lastTarget) {
+            // We don't know anything about the contents of the new maps
+            this.dirtyTracker.markAll();
+            this.lastTarget = array;
+        }
+
+        final boolean dirty = this.dirtyTracker.isDirty();
         for (int col = 0; col < array.length; col++) {
             for (int row = 0; row < array[col].length; row++) {
-                final ClientsideMap renderTarget = array[col][row];
-                final Vec2 min = new Vec2(Integer.MAX_VALUE, Integer.MAX_VALUE);
-                final Vec2 max = new Vec2(Integer.MIN_VALUE, Integer.MIN_VALUE);
-
-                for (int x = 0; x < 128; x++) {
-                    final int bigX = col * 128 + x;
-                    for (int y = 0; y < 128; y++) {
-                        final int bigY = row * 128 + y;
-
-                        // No need to set the pixel if it's already the same color
-                        if (this.getPixel(bigX, bigY) == renderTarget.getData()[x + y * 128]) {
-                            continue;
-                        }
-
-                        // Check and set bounds accordingly
-                        if (x < min.x) {
-                            min.x = x;
-                        }
-                        if (y < min.y) {
-                            min.y = y;
-                        }
-                        if (x + 1 > max.x) {
-                            max.x = x + 1;
-                        }
-                        if (y + 1 > max.y) {
-                            max.y = y + 1;
-                        }
-
-                        renderTarget.getData()[x + y * 128] = this.getPixel(bigX, bigY);
-                    }
+                if (!dirty || !this.dirtyTracker.isDirty(col, row)) {
+                    ClientsideMapGraphics.clearBounds(array[col][row]);
+                    continue;
                 }
 
-                // Set the calculated bounds
-                renderTarget.setX(min.x == Integer.MAX_VALUE ? 0 : min.x);
-                renderTarget.setY(min.y == Integer.MAX_VALUE ? 0 : min.y);
-                renderTarget.setWidth(max.x == Integer.MIN_VALUE ? 0 : max.x - min.x);
-                renderTarget.setHeight(max.y == Integer.MIN_VALUE ? 0 : max.y - min.y);
+                // Every row of a tile is contiguous and uses the same stride, no matter the layout
+                final int offset = this.layout.index(col * 128, row * 128, this.width, this.height);
+                final int stride = this.layout.index(col * 128, row * 128 + 1, this.width, this.height) - offset;
+                ClientsideMapGraphics.renderTile(this.data, offset, stride,
+                        this.dirtyTracker.getMinRow(col, row), this.dirtyTracker.getMaxRow(col, row), array[col][row]);
             }
         }
+        if (dirty) {
+            this.dirtyTracker.clear();
+        }
+    }
+
+    @Override
+    public void markDirty(final int x, final int y, final int width, final int height) {
+        this.dirtyTracker.mark(x, y, width, height);
     }
 
     @Override
     public MapGraphics<MapScreen, ClientsideMap[][]> copy() {
-        final FastMapScreenGraphics copy = new FastMapScreenGraphics(this.width / 128, this.height / 128);
+        final FastMapScreenGraphics copy = new FastMapScreenGraphics(this.width / 128, this.height / 128, this.layout);
         System.arraycopy(
-                this.getDirectAccessData(),
+                this.data,
                 0,
-                copy.getDirectAccessData(),
+                copy.data,
                 0,
-                this.getDirectAccessData().length
+                this.data.length
         );
         return copy;
     }
 
     @Override
     public byte[] getDirectAccessData() {
+        // The caller might write into the array
+        this.markDirty();
         return this.data;
     }
 
+    @Override
+    protected byte[] getDirectAccessDataUnmarked() {
+        return this.data;
+    }
+
+    @Override
+    public BufferLayout getLayout() {
+        return this.layout;
+    }
+
     @Override
     public int getWidth() {
         return this.width;
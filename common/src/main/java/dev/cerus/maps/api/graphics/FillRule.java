@@ -0,0 +1,18 @@
+package dev.cerus.maps.api.graphics;
+
+/**
+ * Decides which parts of a self-intersecting polygon are inside of the polygon
+ */
+public enum FillRule {
+
+    /**
+     * A point is inside if a ray from the point crosses the outline an odd number of times
+     */
+    EVEN_ODD,
+
+    /**
+     * A point is inside if the outline winds around the point at least once
+     */
+    NON_ZERO
+
+}
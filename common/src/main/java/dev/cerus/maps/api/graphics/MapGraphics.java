@@ -1,17 +1,22 @@
 package dev.cerus.maps.api.graphics;
 
+import dev.cerus.maps.api.colormap.ColorMap;
 import dev.cerus.maps.api.colormap.ColorMaps;
 import dev.cerus.maps.api.font.MapFont;
 import dev.cerus.maps.api.font.Sprite;
 import dev.cerus.maps.api.graphics.filter.BoxBlurFilter;
 import dev.cerus.maps.api.graphics.filter.Filter;
+import dev.cerus.maps.api.graphics.filter.FilterPipeline;
 import dev.cerus.maps.api.graphics.filter.GrayscaleFilter;
+import dev.cerus.maps.api.graphics.image.DitherMode;
+import dev.cerus.maps.api.graphics.image.ImageConverter;
+import dev.cerus.maps.api.graphics.image.ImageRaster;
+import dev.cerus.maps.api.graphics.image.ResamplingFilter;
+import dev.cerus.maps.api.graphics.image.ScaledImageCache;
 import dev.cerus.maps.util.Vec2;
-import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Deque;
+import java.util.BitSet;
 
 /**
  * The 2D rendering engine for maps. Implementations only need to take care of pixel setting and retrieving.
@@ -23,6 +28,9 @@ import java.util.Deque;
  */
 public abstract class MapGraphics<C, P> {
 
+    // Amount of pixels that the flood fill reads at once when searching for the end of a span
+    private static final int FILL_CHUNK = 32;
+
     /**
      * Creates a new standalone graphics instance
      *
@@ -64,21 +72,15 @@ public abstract class MapGraphics<C, P> {
      *     | ######## |
      *     +----------+
      * </pre>
+     * <p>
+     * Same as {@link #composite(MapGraphics, int, int, CompositeMode)} with {@link CompositeMode#DST_OVER}.
      *
      * @param graphics The graphics instance to composite
      * @param atX      The x coordinate where the composition should start
      * @param atY      The y coordinate where the composition should start
      */
     public void compositeOver(final MapGraphics<?, ?> graphics, final int atX, final int atY) {
-        for (int x = 0; x < this.getWidth(); x++) {
-            for (int y = 0; y < this.getHeight(); y++) {
-                if (x >= atX && y >= atY && x - atX < graphics.getWidth() && y - atY < graphics.getHeight()
-                        && this.isTransparent(this.getPixel(x, y))
-                        && !graphics.isTransparent(graphics.getPixel(x - atX, y - atY))) {
-                    this.setPixel(x, y, 1F, graphics.getPixel(x - atX, y - atY));
-                }
-            }
-        }
+        this.composite(graphics, atX, atY, CompositeMode.DST_OVER);
     }
 
     /**
@@ -98,22 +100,15 @@ public abstract class MapGraphics<C, P> {
      *     |          |
      *     +----------+
      * </pre>
+     * <p>
+     * Same as {@link #composite(MapGraphics, int, int, CompositeMode)} with {@link CompositeMode#DST_IN}.
      *
      * @param graphics The graphics instance to composite
      * @param atX      The x coordinate where the composition should start
      * @param atY      The y coordinate where the composition should start
      */
     public void compositeIn(final MapGraphics<?, ?> graphics, final int atX, final int atY) {
-        for (int x = 0; x < this.getWidth(); x++) {
-            for (int y = 0; y < this.getHeight(); y++) {
-                if ((x - atX >= graphics.getWidth() || y - atY >= graphics.getHeight())
-                        || (x < atX || y < atY)
-                        || (this.isTransparent(this.getPixel(x, y))
-                        || graphics.isTransparent(graphics.getPixel(x - atX, y - atY)))) {
-                    this.setPixel(x, y, 1F, (byte) 0);
-                }
-            }
-        }
+        this.composite(graphics, atX, atY, CompositeMode.DST_IN);
     }
 
     /**
@@ -133,20 +128,15 @@ public abstract class MapGraphics<C, P> {
      *     | ######## |
      *     +----------+
      * </pre>
+     * <p>
+     * Same as {@link #composite(MapGraphics, int, int, CompositeMode)} with {@link CompositeMode#DST_OUT}.
      *
      * @param graphics The graphics instance to composite
      * @param atX      The x coordinate where the composition should start
      * @param atY      The y coordinate where the composition should start
      */
     public void compositeOut(final MapGraphics<?, ?> graphics, final int atX, final int atY) {
-        for (int x = 0; x < this.getWidth(); x++) {
-            for (int y = 0; y < this.getHeight(); y++) {
-                if (x >= atX && y >= atY && x - atX < graphics.getWidth() && y - atY < graphics.getHeight()
-                        && !this.isTransparent(graphics.getPixel(x - atX, y - atY))) {
-                    this.setPixel(x, y, 1F, (byte) 0);
-                }
-            }
-        }
+        this.composite(graphics, atX, atY, CompositeMode.DST_OUT);
     }
 
     /**
@@ -166,27 +156,15 @@ public abstract class MapGraphics<C, P> {
      *     |          |
      *     +----------+
      * </pre>
+     * <p>
+     * Same as {@link #composite(MapGraphics, int, int, CompositeMode)} with {@link CompositeMode#DST_ATOP}.
      *
      * @param graphics The graphics instance to composite
      * @param atX      The x coordinate where the composition should start
      * @param atY      The y coordinate where the composition should start
      */
     public void compositeAtop(final MapGraphics<?, ?> graphics, final int atX, final int atY) {
-        for (int x = 0; x < this.getWidth(); x++) {
-            for (int y = 0; y < this.getHeight(); y++) {
-                if (x >= atX && y >= atY && x - atX < graphics.getWidth() && y - atY < graphics.getHeight()) {
-                    if (!this.isTransparent(this.getPixel(x, y))
-                            && graphics.isTransparent(graphics.getPixel(x - atX, y - atY))) {
-                        this.setPixel(x, y, (byte) 0);
-                    } else if (this.isTransparent(this.getPixel(x, y))
-                            && !graphics.isTransparent(graphics.getPixel(x - atX, y - atY))) {
-                        this.setPixel(x, y, graphics.getPixel(x - atX, y - atY));
-                    }
-                } else if (!this.isTransparent(this.getPixel(x, y))) {
-                    this.setPixel(x, y, (byte) 0);
-                }
-            }
-        }
+        this.composite(graphics, atX, atY, CompositeMode.DST_ATOP);
     }
 
     /**
@@ -206,26 +184,107 @@ public abstract class MapGraphics<C, P> {
      *     | ######## |
      *     +----------+
      * </pre>
+     * <p>
+     * Same as {@link #composite(MapGraphics, int, int, CompositeMode)} with {@link CompositeMode#XOR}.
      *
      * @param graphics The graphics instance to composite
      * @param atX      The x coordinate where the composition should start
      * @param atY      The y coordinate where the composition should start
      */
     public void compositeXor(final MapGraphics<?, ?> graphics, final int atX, final int atY) {
-        for (int x = 0; x < this.getWidth(); x++) {
-            for (int y = 0; y < this.getHeight(); y++) {
-                if (x >= atX && y >= atY && x - atX < graphics.getWidth() && y - atY < graphics.getHeight()) {
-                    if (!graphics.isTransparent(graphics.getPixel(x - atX, y - atY))
-                            && !this.isTransparent(this.getPixel(x, y))) {
-                        this.setPixel(x, y, 1F, (byte) 0);
-                    } else if (!graphics.isTransparent(graphics.getPixel(x - atX, y - atY))) {
-                        this.setPixel(x, y, 1F, graphics.getPixel(x - atX, y - atY));
+        this.composite(graphics, atX, atY, CompositeMode.XOR);
+    }
+
+    /**
+     * Composite the specified graphics instance onto this graphics instance. Only the area that is covered by
+     * the specified graphics instance is processed, unless the mode clears uncovered pixels of this buffer.
+     *
+     * @param graphics The graphics instance to composite (the source)
+     * @param atX      The x coordinate where the composition should start
+     * @param atY      The y coordinate where the composition should start
+     * @param mode     The compositing mode
+     */
+    public void composite(final MapGraphics<?, ?> graphics, final int atX, final int atY, final CompositeMode mode) {
+        final int width = this.getWidth();
+        final int height = this.getHeight();
+        final int fromX = Math.max(0, atX);
+        final int toX = Math.min(width, atX + graphics.getWidth());
+        final int fromY = Math.max(0, atY);
+        final int toY = Math.min(height, atY + graphics.getHeight());
+        final boolean overlaps = fromX < toX && fromY < toY;
+
+        if (!mode.keepsDestinationOnly()) {
+            // Everything that is not covered by the source has to be cleared
+            for (int y = 0; y < height; y++) {
+                if (!overlaps || y < fromY || y >= toY) {
+                    this.fillSpan(0, y, width, (byte) 0, 1f);
+                } else {
+                    this.fillSpan(0, y, fromX, (byte) 0, 1f);
+                    this.fillSpan(toX, y, width - toX, (byte) 0, 1f);
+                }
+            }
+        }
+        if (!overlaps) {
+            return;
+        }
+
+        final boolean[] dstTransparent = this.transparencyTable();
+        final boolean[] srcTransparent = graphics.transparencyTable();
+        if (this.hasDirectAccessCapabilities() && graphics.hasDirectAccessCapabilities()) {
+            final byte[] dst = this.getDirectAccessDataUnmarked();
+            final byte[] src = graphics.getDirectAccessDataUnmarked();
+            for (int y = fromY; y < toY; y++) {
+                boolean changed = false;
+                // Both layouts can split the row at different positions
+                for (int x = fromX; x < toX; ) {
+                    final int n = Math.min(toX - x, Math.min(
+                            this.getLayout().run(x, width),
+                            graphics.getLayout().run(x - atX, graphics.getWidth())
+                    ));
+                    final int dstIndex = this.index(x, y);
+                    final int srcIndex = graphics.index(x - atX, y - atY);
+                    for (int i = 0; i < n; i++) {
+                        final byte d = dst[dstIndex + i];
+                        final byte s = src[srcIndex + i];
+                        final byte result = mode.apply(d, s, dstTransparent[d & 0xFF], srcTransparent[s & 0xFF]);
+                        if (result != d) {
+                            dst[dstIndex + i] = result;
+                            changed = true;
+                        }
                     }
+                    x += n;
+                }
+                if (changed) {
+                    this.markDirty(fromX, y, toX - fromX, 1);
+                }
+            }
+        } else {
+            final int len = toX - fromX;
+            final byte[] dst = new byte[len];
+            final byte[] src = new byte[len];
+            final byte[] out = new byte[len];
+            for (int y = fromY; y < toY; y++) {
+                this.readSpan(fromX, y, dst, 0, len);
+                graphics.readSpan(fromX - atX, y - atY, src, 0, len);
+                for (int i = 0; i < len; i++) {
+                    out[i] = mode.apply(dst[i], src[i], dstTransparent[dst[i] & 0xFF], srcTransparent[src[i] & 0xFF]);
+                }
+                if (!Arrays.equals(dst, out)) {
+                    this.blitSpan(fromX, y, out, 0, len, false);
                 }
             }
         }
     }
 
+    // Looks up the transparency of every color once, so the compositing loops don't need to call isTransparent()
+    private boolean[] transparencyTable() {
+        final boolean[] table = new boolean[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = this.isTransparent((byte) i);
+        }
+        return table;
+    }
+
     public void fillWithBuffer(final MapGraphics<?, ?> graphics, final float alpha, final boolean ignoreTransparent) {
         int x = 0;
         int y = 0;
@@ -276,43 +335,265 @@ public abstract class MapGraphics<C, P> {
      * @param ignoreTransparent Should transparent pixels not be copied?
      */
     public void place(final MapGraphics<?, ?> graphics, final int x, final int y, final float alpha, final boolean ignoreTransparent) {
-        if (x >= this.getWidth() || y >= this.getHeight() || x + graphics.getWidth() < 0 || y + graphics.getWidth() < 0) {
+        final int fromX = Math.max(0, x);
+        final int toX = Math.min(this.getWidth(), x + graphics.getWidth());
+        final int fromY = Math.max(0, y);
+        final int toY = Math.min(this.getHeight(), y + graphics.getHeight());
+        final float normAlpha = this.normalizeAlpha(alpha);
+        if (fromX >= toX || fromY >= toY || normAlpha == 0f) {
             return;
         }
+
         if (this.hasDirectAccessCapabilities()
                 && graphics.hasDirectAccessCapabilities()
-                && !ignoreTransparent) {
-            for (int r = y < 0 ? -y : 0; r < (y + graphics.getHeight() >= this.getHeight()
-                    ? this.getHeight() - y
-                    : graphics.getHeight()); r++) {
-                final int srcX = x < 0 ? -x : 0;
-                final int srcW = graphics.getWidth();
-                final int srcH = graphics.getHeight();
-                final int len;
-                if (x + graphics.getWidth() >= this.getWidth()) {
-                    len = this.getWidth() - x;
-                } else if (x < 0) {
-                    len = graphics.getWidth() - (-x);
+                && !ignoreTransparent
+                && normAlpha == 1f) {
+            for (int row = fromY; row < toY; row++) {
+                this.copyRowDirect(graphics, fromX - x, row - y, fromX, row, toX - fromX);
+            }
+            this.markDirty(fromX, fromY, toX - fromX, toY - fromY);
+        } else {
+            final byte[] buf = new byte[toX - fromX];
+            for (int row = fromY; row < toY; row++) {
+                graphics.readSpan(fromX - x, row - y, buf, 0, buf.length);
+                if (normAlpha == 1f) {
+                    this.blitSpan(fromX, row, buf, 0, buf.length, ignoreTransparent);
                 } else {
-                    len = graphics.getWidth();
+                    // Transparent pixels are never blended, so we don't need to check for them here
+                    this.blendSpan(fromX, row, buf, 0, buf.length, normAlpha);
                 }
+            }
+        }
+    }
+
+    /**
+     * Copies a part of a row from the direct access data of the specified graphics instance into
+     * the direct access data of this instance. Both instances are allowed to use different layouts.
+     * Callers need to make sure that the coordinates are within bounds.
+     *
+     * @param graphics The graphics instance to copy from
+     * @param srcX     The x coordinate in the source
+     * @param srcY     The y coordinate in the source
+     * @param dstX     The x coordinate in this instance
+     * @param dstY     The y coordinate in this instance
+     * @param len      The amount of pixels to copy
+     */
+    private void copyRowDirect(final MapGraphics<?, ?> graphics, int srcX, final int srcY, int dstX, final int dstY, int len) {
+        final byte[] src = graphics.getDirectAccessDataUnmarked();
+        final byte[] dst = this.getDirectAccessDataUnmarked();
+        while (len > 0) {
+            final int n = Math.min(len, Math.min(
+                    graphics.getLayout().run(srcX, graphics.getWidth()),
+                    this.getLayout().run(dstX, this.getWidth())
+            ));
+            System.arraycopy(src, graphics.index(srcX, srcY), dst, this.index(dstX, dstY), n);
+            srcX += n;
+            dstX += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Fills a part of a row in the direct access data of this instance.
+     * Callers need to make sure that the coordinates are within bounds.
+     *
+     * @param x     The x coordinate
+     * @param y     The y coordinate
+     * @param len   The amount of pixels to fill
+     * @param color The color
+     */
+    private void fillRowDirect(int x, final int y, int len, final byte color) {
+        final byte[] data = this.getDirectAccessDataUnmarked();
+        while (len > 0) {
+            final int n = Math.min(len, this.getLayout().run(x, this.getWidth()));
+            final int index = this.index(x, y);
+            Arrays.fill(data, index, index + n, color);
+            x += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Fills a horizontal span of pixels. Pixels outside of this buffer are skipped.
+     * <p>
+     * Most drawing methods are built on top of the span methods. The default implementations write
+     * into the direct access data if possible and fall back to {@link #setPixel(int, int, float, byte)}
+     * otherwise. Implementations without direct access can override them with something faster.
+     *
+     * @param x     The x coordinate of the first pixel
+     * @param y     The y coordinate
+     * @param len   The amount of pixels
+     * @param color The color
+     * @param alpha The alpha of the color
+     */
+    protected void fillSpan(int x, final int y, int len, final byte color, final float alpha) {
+        final float normAlpha = this.normalizeAlpha(alpha);
+        if (x < 0) {
+            len += x;
+            x = 0;
+        }
+        len = Math.min(len, this.getWidth() - x);
+        if (y < 0 || y >= this.getHeight() || len <= 0 || normAlpha == 0f) {
+            return;
+        }
 
-                System.arraycopy(
-                        graphics.getDirectAccessData(),
-                        this.index(srcX, r, srcW, srcH) /*r * graphics.getWidth()*/,
-                        this.getDirectAccessData(),
-                        this.index(Math.max(0, x), r + y, this.getWidth(), this.getHeight()) /*x + (r + y) * this.getWidth()*/,
-                        len
-                );
+        if (!this.hasDirectAccessCapabilities()) {
+            for (int i = 0; i < len; i++) {
+                this.setPixel(x + i, y, normAlpha, color);
             }
+        } else if (normAlpha == 1f) {
+            this.fillRowDirect(x, y, len, color);
+            this.markDirty(x, y, len, 1);
         } else {
-            for (int ox = 0; ox < graphics.getWidth(); ox++) {
-                for (int oy = 0; oy < graphics.getHeight(); oy++) {
-                    if (!ignoreTransparent || !this.isTransparent(graphics.getPixel(ox, oy))) {
-                        this.setPixel(x + ox, y + oy, alpha, graphics.getPixel(ox, oy));
+            final byte[] data = this.getDirectAccessDataUnmarked();
+            for (int i = 0; i < len; ) {
+                final int n = Math.min(len - i, this.getLayout().run(x + i, this.getWidth()));
+                final int index = this.index(x + i, y);
+                for (int j = index; j < index + n; j++) {
+                    data[j] = this.calculateComposite(color, data[j], normAlpha);
+                }
+                i += n;
+            }
+            this.markDirty(x, y, len, 1);
+        }
+    }
+
+    /**
+     * Copies an array of colors into a horizontal span of pixels. Pixels outside of this buffer are skipped.
+     * <p>
+     * See {@link #fillSpan(int, int, int, byte, float)}
+     *
+     * @param x                 The x coordinate of the first pixel
+     * @param y                 The y coordinate
+     * @param src               The colors
+     * @param off               The index of the first color in the array
+     * @param len               The amount of pixels
+     * @param ignoreTransparent Should transparent colors not be copied?
+     */
+    protected void blitSpan(int x, final int y, final byte[] src, int off, int len, final boolean ignoreTransparent) {
+        if (x < 0) {
+            len += x;
+            off -= x;
+            x = 0;
+        }
+        len = Math.min(len, this.getWidth() - x);
+        if (y < 0 || y >= this.getHeight() || len <= 0) {
+            return;
+        }
+
+        if (!this.hasDirectAccessCapabilities()) {
+            for (int i = 0; i < len; i++) {
+                if (!ignoreTransparent || !this.isTransparent(src[off + i])) {
+                    this.setPixel(x + i, y, 1f, src[off + i]);
+                }
+            }
+            return;
+        }
+
+        final byte[] data = this.getDirectAccessDataUnmarked();
+        for (int i = 0; i < len; ) {
+            final int n = Math.min(len - i, this.getLayout().run(x + i, this.getWidth()));
+            final int index = this.index(x + i, y);
+            if (ignoreTransparent) {
+                for (int j = 0; j < n; j++) {
+                    final byte color = src[off + i + j];
+                    if (!this.isTransparent(color)) {
+                        data[index + j] = color;
                     }
                 }
+            } else {
+                System.arraycopy(src, off + i, data, index, n);
             }
+            i += n;
+        }
+        this.markDirty(x, y, len, 1);
+    }
+
+    /**
+     * Blends an array of colors onto a horizontal span of pixels. Pixels outside of this buffer are skipped.
+     * Just like {@link #setPixel(int, int, float, byte)} this will only copy transparent colors if the alpha is 1.
+     * <p>
+     * See {@link #fillSpan(int, int, int, byte, float)}
+     *
+     * @param x     The x coordinate of the first pixel
+     * @param y     The y coordinate
+     * @param src   The colors
+     * @param off   The index of the first color in the array
+     * @param len   The amount of pixels
+     * @param alpha The alpha of the colors
+     */
+    protected void blendSpan(int x, final int y, final byte[] src, int off, int len, final float alpha) {
+        final float normAlpha = this.normalizeAlpha(alpha);
+        if (normAlpha == 1f) {
+            this.blitSpan(x, y, src, off, len, false);
+            return;
+        }
+        if (x < 0) {
+            len += x;
+            off -= x;
+            x = 0;
+        }
+        len = Math.min(len, this.getWidth() - x);
+        if (y < 0 || y >= this.getHeight() || len <= 0 || normAlpha == 0f) {
+            return;
+        }
+
+        if (!this.hasDirectAccessCapabilities()) {
+            for (int i = 0; i < len; i++) {
+                this.setPixel(x + i, y, normAlpha, src[off + i]);
+            }
+            return;
+        }
+
+        final byte[] data = this.getDirectAccessDataUnmarked();
+        for (int i = 0; i < len; ) {
+            final int n = Math.min(len - i, this.getLayout().run(x + i, this.getWidth()));
+            final int index = this.index(x + i, y);
+            for (int j = 0; j < n; j++) {
+                data[index + j] = this.calculateComposite(src[off + i + j], data[index + j], normAlpha);
+            }
+            i += n;
+        }
+        this.markDirty(x, y, len, 1);
+    }
+
+    /**
+     * Reads a horizontal span of pixels into an array. Pixels outside of this buffer are read as 0.
+     *
+     * @param x   The x coordinate of the first pixel
+     * @param y   The y coordinate
+     * @param dst The array to read into
+     * @param off The index of the first pixel in the array
+     * @param len The amount of pixels
+     */
+    protected void readSpan(int x, final int y, final byte[] dst, int off, int len) {
+        if (y < 0 || y >= this.getHeight() || x >= this.getWidth() || x + len <= 0) {
+            Arrays.fill(dst, off, off + len, (byte) 0);
+            return;
+        }
+        if (x < 0) {
+            Arrays.fill(dst, off, off - x, (byte) 0);
+            len += x;
+            off -= x;
+            x = 0;
+        }
+        if (x + len > this.getWidth()) {
+            Arrays.fill(dst, off + this.getWidth() - x, off + len, (byte) 0);
+            len = this.getWidth() - x;
+        }
+
+        if (!this.hasDirectAccessCapabilities()) {
+            for (int i = 0; i < len; i++) {
+                dst[off + i] = this.getPixel(x + i, y);
+            }
+            return;
+        }
+
+        final byte[] data = this.getDirectAccessDataUnmarked();
+        for (int i = 0; i < len; ) {
+            final int n = Math.min(len - i, this.getLayout().run(x + i, this.getWidth()));
+            System.arraycopy(data, this.index(x + i, y), dst, off + i, n);
+            i += n;
         }
     }
 
@@ -382,8 +663,29 @@ public abstract class MapGraphics<C, P> {
                         final int y,
                         final int width,
                         final int height) {
+        this.boxBlur(passes, 1, transparencyHandling, x, y, width, height);
+    }
+
+    /**
+     * Perform box blur on a rectangular area
+     *
+     * @param passes               The intensity of the blur (2-5 for best effect)
+     * @param radius               The radius of the blur window, larger radii don't cost more
+     * @param transparencyHandling How transparent pixels should be handled
+     * @param x                    X coordinate
+     * @param y                    Y coordinate
+     * @param width                Area width
+     * @param height               Area height
+     */
+    public void boxBlur(final int passes,
+                        final int radius,
+                        final BoxBlurFilter.TransparencyHandling transparencyHandling,
+                        final int x,
+                        final int y,
+                        final int width,
+                        final int height) {
         this.applyFilterToArea(
-                new BoxBlurFilter(passes, transparencyHandling),
+                new BoxBlurFilter(passes, radius, transparencyHandling),
                 x,
                 y,
                 width,
@@ -401,13 +703,20 @@ public abstract class MapGraphics<C, P> {
      * @param height Area height
      */
     public void applyFilterToArea(final Filter filter, final int x, final int y, final int width, final int height) {
-        for (int unused = 0; unused < filter.passes(); unused++) {
-            for (int ax = 0; ax < width; ax++) {
-                for (int ay = 0; ay < height; ay++) {
-                    this.setPixel(ax + x, ay + y, filter.apply(this, ax + x, ay + y, x, x + width, y, y + height));
-                }
-            }
-        }
+        filter.applyToArea(this, x, y, width, height);
+    }
+
+    /**
+     * Apply a chain of filters to a rectangular area. The area is only converted to map colors once.
+     *
+     * @param pipeline The filters to apply
+     * @param x        X coordinate
+     * @param y        Y coordinate
+     * @param width    Area width
+     * @param height   Area height
+     */
+    public void applyFilterPipeline(final FilterPipeline pipeline, final int x, final int y, final int width, final int height) {
+        pipeline.apply(this, x, y, width, height);
     }
 
     /**
@@ -421,26 +730,152 @@ public abstract class MapGraphics<C, P> {
      * @param alpha The alpha of the filling color
      */
     public void fill(final int x, final int y, final byte color, final float alpha) {
-        final Deque<Vec2> queue = new ArrayDeque<>();
-        queue.add(new Vec2(x, y));
+        this.fill(x, y, color, alpha, 0, false);
+    }
+
+    /**
+     * Perform a scanline flood fill operation at a specific coordinate
+     * <p>
+     * Every pixel whose color is similar to the color at the starting coordinate and that is connected to
+     * the starting coordinate will be filled. Two colors are similar if none of their RGB components differ
+     * by more than the tolerance. A tolerance of 0 will only fill pixels with the exact same color.
+     *
+     * @param x              The starting x coordinate
+     * @param y              The starting y coordinate
+     * @param color          The color to fill with
+     * @param alpha          The alpha of the filling color
+     * @param tolerance      The maximum difference of each RGB component (0 - 255)
+     * @param eightConnected True if diagonal neighbours should be filled as well
+     */
+    public void fill(final int x, final int y, final byte color, final float alpha, final int tolerance, final boolean eightConnected) {
+        final int width = this.getWidth();
+        final int height = this.getHeight();
+        if (x < 0 || y < 0 || x >= width || y >= height || this.normalizeAlpha(alpha) == 0f) {
+            return;
+        }
+
         final byte colorToReplace = this.getPixel(x, y);
-        if (colorToReplace == color) {
+        final boolean[] matches = this.similarColors(colorToReplace, tolerance);
+        if (colorToReplace == color && tolerance <= 0) {
             return;
         }
 
-        while (!queue.isEmpty()) {
-            final Vec2 n = queue.pop();
-            if (n.x >= 0 && n.y >= 0 && n.x < this.getWidth() && n.y < this.getHeight()
-                    && this.getPixel(n.x, n.y) == colorToReplace) {
-                this.setPixel(n.x, n.y, alpha, color);
-                queue.add(new Vec2(n.x - 1, n.y));
-                queue.add(new Vec2(n.x + 1, n.y));
-                queue.add(new Vec2(n.x, n.y - 1));
-                queue.add(new Vec2(n.x, n.y + 1));
+        // Pixels only need to be remembered if they could still match after being filled
+        final BitSet visited = alpha < 1f || matches[color & 0xFF] ? new BitSet(width * height) : null;
+        // Pixels are copied into a row buffer in small chunks before they're checked,
+        // which is a lot faster than calling getPixel() for every single pixel
+        final byte[] row = new byte[width];
+
+        int[] stack = new int[64];
+        int size = 0;
+        stack[size++] = x;
+        stack[size++] = y;
+        while (size > 0) {
+            final int cy = stack[--size];
+            final int cx = stack[--size];
+            this.readSpan(cx, cy, row, cx, 1);
+            if (!isFillable(row, matches, visited, cx, cy * width)) {
+                continue;
+            }
+
+            // Find the span that contains the current pixel
+            int left = cx;
+            while (left > 0) {
+                final int chunk = Math.min(FILL_CHUNK, left);
+                this.readSpan(left - chunk, cy, row, left - chunk, chunk);
+                int i = left - 1;
+                while (i >= left - chunk && isFillable(row, matches, visited, i, cy * width)) {
+                    i--;
+                }
+                if (i >= left - chunk) {
+                    left = i + 1;
+                    break;
+                }
+                left -= chunk;
+            }
+            int right = cx;
+            while (right < width - 1) {
+                final int chunk = Math.min(FILL_CHUNK, width - 1 - right);
+                this.readSpan(right + 1, cy, row, right + 1, chunk);
+                int i = right + 1;
+                while (i <= right + chunk && isFillable(row, matches, visited, i, cy * width)) {
+                    i++;
+                }
+                if (i <= right + chunk) {
+                    right = i - 1;
+                    break;
+                }
+                right += chunk;
+            }
+            this.fillSpan(left, cy, right - left + 1, color, alpha);
+            if (visited != null) {
+                visited.set(cy * width + left, cy * width + right + 1);
+            }
+
+            // Queue the start of every fillable run in the rows above and below
+            final int from = eightConnected ? Math.max(0, left - 1) : left;
+            final int to = eightConnected ? Math.min(width - 1, right + 1) : right;
+            for (int ny = cy - 1; ny <= cy + 1; ny += 2) {
+                if (ny < 0 || ny >= height) {
+                    continue;
+                }
+                this.readSpan(from, ny, row, from, to - from + 1);
+                boolean inRun = false;
+                for (int nx = from; nx <= to; nx++) {
+                    final boolean fillable = isFillable(row, matches, visited, nx, ny * width);
+                    if (fillable && !inRun) {
+                        if (size + 2 > stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[size++] = nx;
+                        stack[size++] = ny;
+                    }
+                    inRun = fillable;
+                }
             }
         }
     }
 
+    // Check if a pixel of a row should be filled
+    private static boolean isFillable(final byte[] row, final boolean[] matches, final BitSet visited, final int x, final int rowOffset) {
+        return matches[row[x] & 0xFF] && (visited == null || !visited.get(rowOffset + x));
+    }
+
+    /**
+     * Finds all the colors that are similar to the specified color
+     *
+     * @param color     The color
+     * @param tolerance The maximum difference of each RGB component
+     *
+     * @return A lookup table, indexed by the unsigned color
+     */
+    private boolean[] similarColors(final byte color, final int tolerance) {
+        final boolean[] matches = new boolean[256];
+        matches[color & 0xFF] = true;
+        if (tolerance <= 0 || this.isTransparent(color)) {
+            return matches;
+        }
+
+        final ColorMap colorMap = ColorMaps.current();
+        final int seed = color & 0xFF;
+        if (colorMap.getRgbTable()[seed] == -1) {
+            return matches;
+        }
+        final int[] rgb = colorMap.getRgbTable();
+        final byte[] red = colorMap.getRedTable();
+        final byte[] green = colorMap.getGreenTable();
+        final byte[] blue = colorMap.getBlueTable();
+        for (int i = 0; i < 256; i++) {
+            if (rgb[i] == -1 || this.isTransparent((byte) i)) {
+                continue;
+            }
+            matches[i] = Math.abs((red[seed] & 0xFF) - (red[i] & 0xFF)) <= tolerance
+                    && Math.abs((green[seed] & 0xFF) - (green[i] & 0xFF)) <= tolerance
+                    && Math.abs((blue[seed] & 0xFF) - (blue[i] & 0xFF)) <= tolerance;
+        }
+        return matches;
+    }
+
     /**
      * Fills the whole buffer with a specific color
      *
@@ -448,12 +883,11 @@ public abstract class MapGraphics<C, P> {
      */
     public void fillComplete(final byte color) {
         if (this.hasDirectAccessCapabilities()) {
-            Arrays.fill(this.getDirectAccessData(), color);
+            Arrays.fill(this.getDirectAccessDataUnmarked(), color);
+            this.markDirty();
         } else {
-            for (int x = 0; x < this.getWidth(); x++) {
-                for (int y = 0; y < this.getHeight(); y++) {
-                    this.setPixel(x, y, color);
-                }
+            for (int y = 0; y < this.getHeight(); y++) {
+                this.fillSpan(0, y, this.getWidth(), color, 1f);
             }
         }
     }
@@ -469,22 +903,8 @@ public abstract class MapGraphics<C, P> {
      * @param alpha The alpha of the rectangle
      */
     public void fillRect(final int x, final int y, final int w, final int h, final byte color, final float alpha) {
-        if (alpha == 0f) {
-            return;
-        }
-        if (this.hasDirectAccessCapabilities() && alpha == 1f) {
-            for (int r = 0; r < h; r++) {
-                Arrays.fill(this.getDirectAccessData(),
-                        Math.max(0, this.index(x, r + y, this.getWidth(), this.getHeight())) /*x + (r + y) * this.getWidth()*/,
-                        Math.min(this.getDirectAccessData().length - 1, this.index(Math.min(this.getWidth(), x + w), r + y, this.getWidth(), this.getHeight())) /*(x + w) + (r + y) * this.getWidth()*/,
-                        color);
-            }
-        } else {
-            for (int cx = x; cx < x + w; cx++) {
-                for (int cy = y; cy < y + h; cy++) {
-                    this.setPixel(cx, cy, alpha, color);
-                }
-            }
+        for (int r = Math.max(0, y); r < Math.min(this.getHeight(), y + h); r++) {
+            this.fillSpan(x, r, w, color, alpha);
         }
     }
 
@@ -506,14 +926,16 @@ public abstract class MapGraphics<C, P> {
     }
 
     /**
-     * Draws a line
+     * Draws a line using Bresenham's line algorithm
+     * <p>
+     * Every pixel of the line is only set once, so translucent lines don't get darker where they overlap themselves.
      *
      * @param x1    The starting x coordinate
      * @param y1    The starting y coordinate
      * @param x2    The finishing x coordinate
      * @param y2    The finishing y coordinate
      * @param color The outline color
-     * @param alpha The alpha of the rectangle
+     * @param alpha The alpha of the line
      */
     public void drawLine(final int x1, final int y1, final int x2, final int y2, final byte color, final float alpha) {
         if (x1 == x2) {
@@ -524,22 +946,157 @@ public abstract class MapGraphics<C, P> {
             this.drawLineX(x1, x2, y1, color, alpha);
             return;
         }
-        this.drawLine(new Vec2(x1, y1), new Vec2(x2, y2), color, alpha);
-    }
 
-    protected void drawLineX(final int x1, final int x2, final int y, final byte color, final float alpha) {
-        if (this.hasDirectAccessCapabilities() && alpha == 1f) {
-            Arrays.fill(this.getDirectAccessData(),
-                    this.index(Math.min(x1, x2), y, this.getWidth(), this.getHeight()) /*Math.min(x1, x2) + y * this.getWidth()*/,
-                    this.index(Math.max(x1, x2), y, this.getWidth(), this.getHeight()) /*Math.max(x1, x2) + y * this.getWidth()*/,
-                    color);
+        final int dx = Math.abs(x2 - x1);
+        final int dy = Math.abs(y2 - y1);
+        final int sx = x1 < x2 ? 1 : -1;
+        final int sy = y1 < y2 ? 1 : -1;
+        if (dx >= dy) {
+            // Flat line, pixels with the same y coordinate can be drawn as one span
+            int err = dx / 2;
+            int y = y1;
+            int spanStart = x1;
+            for (int x = x1; ; x += sx) {
+                if (x == x2) {
+                    this.fillSpan(Math.min(spanStart, x), y, Math.abs(x - spanStart) + 1, color, alpha);
+                    break;
+                }
+                err -= dy;
+                if (err < 0) {
+                    this.fillSpan(Math.min(spanStart, x), y, Math.abs(x - spanStart) + 1, color, alpha);
+                    y += sy;
+                    err += dx;
+                    spanStart = x + sx;
+                }
+            }
         } else {
-            for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++) {
+            // Steep line, every row only contains a single pixel
+            int err = dy / 2;
+            int x = x1;
+            for (int y = y1; ; y += sy) {
                 this.setPixel(x, y, alpha, color);
+                if (y == y2) {
+                    break;
+                }
+                err -= dx;
+                if (err < 0) {
+                    x += sx;
+                    err += dy;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a thick line
+     * <p>
+     * The line is drawn as a series of short runs perpendicular to its main direction. The length of the runs is
+     * corrected by the slope of the line, so diagonal lines are just as thick as straight lines.
+     *
+     * @param x1        The starting x coordinate
+     * @param y1        The starting y coordinate
+     * @param x2        The finishing x coordinate
+     * @param y2        The finishing y coordinate
+     * @param thickness The thickness in pixels
+     * @param color     The outline color
+     * @param alpha     The alpha of the line
+     */
+    public void drawLine(final int x1, final int y1, final int x2, final int y2, final int thickness, final byte color, final float alpha) {
+        if (thickness <= 1) {
+            this.drawLine(x1, y1, x2, y2, color, alpha);
+            return;
+        }
+
+        final int dx = Math.abs(x2 - x1);
+        final int dy = Math.abs(y2 - y1);
+        final int sx = x1 < x2 ? 1 : -1;
+        final int sy = y1 < y2 ? 1 : -1;
+        final int major = Math.max(dx, dy);
+        final int run = major == 0 ? thickness : (int) Math.round(thickness * Math.hypot(dx, dy) / major);
+        final int before = (run - 1) / 2;
+        if (dx >= dy) {
+            // Flat line, draw vertical runs
+            int err = dx / 2;
+            int y = y1;
+            for (int x = x1; ; x += sx) {
+                for (int ry = y - before; ry < y - before + run; ry++) {
+                    this.setPixel(x, ry, alpha, color);
+                }
+                if (x == x2) {
+                    break;
+                }
+                err -= dy;
+                if (err < 0) {
+                    y += sy;
+                    err += dx;
+                }
+            }
+        } else {
+            // Steep line, draw horizontal runs
+            int err = dy / 2;
+            int x = x1;
+            for (int y = y1; ; y += sy) {
+                this.fillSpan(x - before, y, run, color, alpha);
+                if (y == y2) {
+                    break;
+                }
+                err -= dx;
+                if (err < 0) {
+                    x += sx;
+                    err += dy;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws an anti-aliased line using Xiaolin Wu's line algorithm
+     * <p>
+     * Every pixel is blended with the coverage of the line, so the result depends on the available colors.
+     *
+     * @param x1    The starting x coordinate
+     * @param y1    The starting y coordinate
+     * @param x2    The finishing x coordinate
+     * @param y2    The finishing y coordinate
+     * @param color The outline color
+     * @param alpha The alpha of the line
+     */
+    public void drawLineAntialiased(final int x1, final int y1, final int x2, final int y2, final byte color, final float alpha) {
+        final boolean steep = Math.abs(y2 - y1) > Math.abs(x2 - x1);
+        // Swap the axes of steep lines so we can always walk along x
+        int ax = steep ? y1 : x1;
+        int ay = steep ? x1 : y1;
+        int bx = steep ? y2 : x2;
+        int by = steep ? x2 : y2;
+        if (ax > bx) {
+            int tmp = ax;
+            ax = bx;
+            bx = tmp;
+            tmp = ay;
+            ay = by;
+            by = tmp;
+        }
+
+        final float gradient = ax == bx ? 1f : (float) (by - ay) / (bx - ax);
+        float intersectY = ay;
+        for (int x = ax; x <= bx; x++) {
+            final int y = (int) Math.floor(intersectY);
+            final float fraction = intersectY - y;
+            if (steep) {
+                this.setPixel(y, x, alpha * (1f - fraction), color);
+                this.setPixel(y + 1, x, alpha * fraction, color);
+            } else {
+                this.setPixel(x, y, alpha * (1f - fraction), color);
+                this.setPixel(x, y + 1, alpha * fraction, color);
             }
+            intersectY += gradient;
         }
     }
 
+    protected void drawLineX(final int x1, final int x2, final int y, final byte color, final float alpha) {
+        this.fillSpan(Math.min(x1, x2), y, Math.abs(x2 - x1) + 1, color, alpha);
+    }
+
     protected void drawLineY(final int y1, final int y2, final int x, final byte color, final float alpha) {
         for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) {
             this.setPixel(x, y, alpha, color);
@@ -548,76 +1105,144 @@ public abstract class MapGraphics<C, P> {
 
     /**
      * Draws a line
+     * <p>
+     * See {@link #drawLine(int, int, int, int, byte, float)}
      *
      * @param v1    The starting coordinate
      * @param v2    The finishing coordinate
      * @param color The outline color
-     * @param alpha The alpha of the rectangle
+     * @param alpha The alpha of the line
      */
     public void drawLine(final Vec2 v1, final Vec2 v2, final byte color, final float alpha) {
-        final Vec2[] arr = this.lerpVecArr(v1, v2);
-        for (final Vec2 p : arr) {
-            this.setPixel(p.x, p.y, alpha, color);
-        }
+        this.drawLine(v1.x, v1.y, v2.x, v2.y, color, alpha);
     }
 
     /**
-     * Perform linear interpolation calculations
+     * Draws an image onto the graphics buffer
      * <p>
-     * All the line math was taken from https://www.redblobgames.com/grids/line-drawing.html
-     *
-     * @param start Start
-     * @param end   End
+     * The image is converted in parallel row stripes. If this buffer supports direct access the converted
+     * colors are written straight into the direct access array, otherwise they are written span by span.
      *
-     * @return Array of points between start and end
+     * @param img The image to draw
+     * @param x   The x coordinate where the image should be drawn
+     * @param y   The y coordinate where the image should be drawn
      */
-    private Vec2[] lerpVecArr(final Vec2 start, final Vec2 end) {
-        final int len = this.dist(start, end);
-        final Vec2[] arr = new Vec2[len];
-
-        for (int i = 0; i < len; i++) {
-            arr[i] = this.lerpVec(start, end, (float) i / (float) len);
+    public void drawImage(final BufferedImage img, final int x, final int y) {
+        final int fromX = Math.max(0, x);
+        final int fromY = Math.max(0, y);
+        final int toX = Math.min(this.getWidth(), x + img.getWidth());
+        final int toY = Math.min(this.getHeight(), y + img.getHeight());
+        if (fromX >= toX || fromY >= toY) {
+            return;
         }
 
-        return arr;
-    }
-
-    private Vec2 lerpVec(final Vec2 start, final Vec2 end, final float t) {
-        return new Vec2(this.round(this.lerp(start.x, end.x, t)), this.round(this.lerp(start.y, end.y, t)));
-    }
+        final ImageRaster raster = ImageRaster.of(img);
+        final int len = toX - fromX;
+        if (this.hasDirectAccessCapabilities()) {
+            final byte[] data = this.getDirectAccessDataUnmarked();
+            final BufferLayout layout = this.getLayout();
+            final int width = this.getWidth();
+            final int height = this.getHeight();
+            ImageConverter.forEachStripe(fromY, toY, len, (fromRow, toRow) -> {
+                final int[] argb = new int[len];
+                for (int row = fromRow; row < toRow; row++) {
+                    raster.readRow(fromX - x, row - y, len, argb, 0);
+                    // Layouts can split the row into multiple runs
+                    for (int cx = fromX; cx < toX; ) {
+                        final int run = Math.min(layout.run(cx, width), toX - cx);
+                        final int index = layout.index(cx, row, width, height);
+                        for (int i = 0; i < run; i++) {
+                            final int pixel = argb[cx - fromX + i];
+                            final int alpha = pixel >>> 24;
+                            if (alpha == 0) {
+                                continue;
+                            }
+                            final byte color = ColorCache.rgbToMap(pixel >> 16 & 0xFF, pixel >> 8 & 0xFF, pixel & 0xFF);
+                            data[index + i] = alpha == 255 ? color : this.calculateComposite(color, data[index + i], alpha / 255f);
+                        }
+                        cx += run;
+                    }
+                }
+            });
+            this.markDirty(fromX, fromY, len, toY - fromY);
+            return;
+        }
 
-    private float lerp(final int start, final int end, final float t) {
-        return start + t * (end - start);
+        // Convert in parallel, then write sequentially. Translucent pixels are blended afterwards.
+        final int[] argb = new int[len * (toY - fromY)];
+        final byte[] colors = new byte[argb.length];
+        ImageConverter.forEachStripe(fromY, toY, len, (fromRow, toRow) -> {
+            for (int row = fromRow; row < toRow; row++) {
+                final int off = (row - fromY) * len;
+                raster.readRow(fromX - x, row - y, len, argb, off);
+                for (int i = off; i < off + len; i++) {
+                    colors[i] = argb[i] >>> 24 == 255 ? ColorCache.rgbToMap(argb[i] >> 16 & 0xFF, argb[i] >> 8 & 0xFF, argb[i] & 0xFF) : 0;
+                }
+            }
+        });
+        for (int row = fromY; row < toY; row++) {
+            final int off = (row - fromY) * len;
+            this.blitSpan(fromX, row, colors, off, len, true);
+            for (int i = off; i < off + len; i++) {
+                final int alpha = argb[i] >>> 24;
+                if (alpha != 0 && alpha != 255) {
+                    final byte mapColor = ColorCache.rgbToMap(argb[i] >> 16 & 0xFF, argb[i] >> 8 & 0xFF, argb[i] & 0xFF);
+                    this.setPixel(fromX + i - off, row, alpha / 255f, mapColor);
+                }
+            }
+        }
     }
 
-    // 2D distance
-    private int dist(final Vec2 v1, final Vec2 v2) {
-        return (int) (Math.pow(v1.x - v2.x, 2) + Math.pow(v1.y - v2.y, 2));
+    /**
+     * Draws a dithered image onto the graphics buffer. Translucent pixels are not blended,
+     * see {@link ImageConverter} for details.
+     *
+     * @param img  The image to draw
+     * @param x    The x coordinate where the image should be drawn
+     * @param y    The y coordinate where the image should be drawn
+     * @param mode The dithering mode
+     */
+    public void drawImage(final BufferedImage img, final int x, final int y, final DitherMode mode) {
+        this.place(ImageConverter.convert(img, mode), x, y, 1f, true);
     }
 
-    // Pretty much useless
-    private int round(final float f) {
-        final int i = (int) f;
-        final float rem = f - i;
-        return rem < 0.5f ? i : i + 1;
+    /**
+     * Draws a scaled image onto the graphics buffer. Translucent pixels are not blended.
+     * <p>
+     * Scaled images are cached, see {@link ScaledImageCache} for details.
+     *
+     * @param img    The image to draw
+     * @param x      The x coordinate where the image should be drawn
+     * @param y      The y coordinate where the image should be drawn
+     * @param width  The width the image should be drawn with
+     * @param height The height the image should be drawn with
+     * @param filter The resampling filter
+     */
+    public void drawImage(final BufferedImage img, final int x, final int y, final int width, final int height, final ResamplingFilter filter) {
+        this.drawImage(img, x, y, width, height, filter, DitherMode.NONE);
     }
 
     /**
-     * Draws an image onto the graphics buffer
+     * Draws a scaled and dithered image onto the graphics buffer. Translucent pixels are not blended.
+     * <p>
+     * Scaled images are cached, see {@link ScaledImageCache} for details.
      *
-     * @param img The image to draw
-     * @param x   The x coordinate where the image should be drawn
-     * @param y   The y coordinate where the image should be drawn
+     * @param img    The image to draw
+     * @param x      The x coordinate where the image should be drawn
+     * @param y      The y coordinate where the image should be drawn
+     * @param width  The width the image should be drawn with
+     * @param height The height the image should be drawn with
+     * @param filter The resampling filter
+     * @param mode   The dithering mode
      */
-    public void drawImage(final BufferedImage img, final int x, final int y) {
-        for (int ix = 0; ix < img.getWidth(); ix++) {
-            for (int iy = 0; iy < img.getHeight(); iy++) {
-                final Color color = new Color(img.getRGB(ix, iy), img.getColorModel().hasAlpha());
-                final float alpha = img.getColorModel().hasAlpha() ? color.getAlpha() / 255f : 1f;
-                final byte mapColor = ColorCache.rgbToMap(color.getRed(), color.getGreen(), color.getBlue());
-                this.setPixel(x + ix, y + iy, alpha, mapColor);
-            }
-        }
+    public void drawImage(final BufferedImage img,
+                          final int x,
+                          final int y,
+                          final int width,
+                          final int height,
+                          final ResamplingFilter filter,
+                          final DitherMode mode) {
+        this.place(ScaledImageCache.getDefault().get(img, width, height, filter, mode), x, y, 1f, true);
     }
 
     /**
@@ -675,13 +1300,20 @@ public abstract class MapGraphics<C, P> {
                 // Draw text if the character is not a special character
                 final Sprite sprite = font.get(cp);
                 for (int row = 0; row < font.getHeight(); ++row) {
-                    for (int col = 0; col < sprite.getWidth(); ++col) {
-                        if (sprite.get(row, col)) {
-                            for (int eX = 0; eX < size; eX++) {
-                                for (int eY = 0; eY < size; eY++) {
-                                    this.setPixel(x + (size * col) + (eX), y + (size * row) + (eY), color);
-                                }
-                            }
+                    int col = 0;
+                    while (col < sprite.getWidth()) {
+                        if (!sprite.get(row, col)) {
+                            col++;
+                            continue;
+                        }
+
+                        // Draw consecutive pixels as one span
+                        final int start = col;
+                        while (col < sprite.getWidth() && sprite.get(row, col)) {
+                            col++;
+                        }
+                        for (int eY = 0; eY < size; eY++) {
+                            this.fillSpan(x + size * start, y + size * row + eY, size * (col - start), color, 1f);
                         }
                     }
                 }
@@ -767,6 +1399,202 @@ public abstract class MapGraphics<C, P> {
         this.setPixel((int) (-x + atX), (int) (-y + atY), alpha, color);
     }
 
+    public void fillEllipse(final int atX, final int atY, final int widthRad, final int heightRad, final byte color) {
+        this.fillEllipse(atX, atY, widthRad, heightRad, color, 1f);
+    }
+
+    /**
+     * Draws and fills an ellipse
+     * <p>
+     * Every row of the ellipse is drawn as a single span.
+     *
+     * @param atX       Center x of the ellipse
+     * @param atY       Center y of the ellipse
+     * @param widthRad  Horizontal radius
+     * @param heightRad Vertical radius
+     * @param color     Color of the ellipse
+     * @param alpha     Alpha of the ellipse
+     */
+    public void fillEllipse(final int atX,
+                            final int atY,
+                            final int widthRad,
+                            final int heightRad,
+                            final byte color,
+                            final float alpha) {
+        if (widthRad < 0 || heightRad < 0) {
+            return;
+        }
+
+        // A pixel is inside if x^2 / a^2 + y^2 / b^2 <= 1. The radii are extended by half a pixel so
+        // the outermost rows and columns don't end up as single pixels. Everything is doubled to stay in integers.
+        final long a2 = (2L * widthRad + 1) * (2L * widthRad + 1);
+        final long b2 = (2L * heightRad + 1) * (2L * heightRad + 1);
+        int dx = widthRad;
+        for (int dy = 0; dy <= heightRad; dy++) {
+            // The rows get narrower the further away they are from the center
+            while (dx > 0 && 4L * dx * dx * b2 + 4L * dy * dy * a2 > a2 * b2) {
+                dx--;
+            }
+            this.fillSpan(atX - dx, atY + dy, dx * 2 + 1, color, alpha);
+            if (dy != 0) {
+                this.fillSpan(atX - dx, atY - dy, dx * 2 + 1, color, alpha);
+            }
+        }
+    }
+
+    /**
+     * Draws and fills a polygon using the even-odd rule
+     * <p>
+     * See {@link #fillPolygon(int[], int[], int, FillRule, byte, float)}
+     *
+     * @param xPoints The x coordinates of the points
+     * @param yPoints The y coordinates of the points
+     * @param nPoints The amount of points
+     * @param color   The fill color
+     * @param alpha   The alpha of the polygon
+     */
+    public void fillPolygon(final int[] xPoints, final int[] yPoints, final int nPoints, final byte color, final float alpha) {
+        this.fillPolygon(xPoints, yPoints, nPoints, FillRule.EVEN_ODD, color, alpha);
+    }
+
+    /**
+     * Draws and fills a polygon. The polygon is closed automatically.
+     * <p>
+     * The polygon is scanned row by row: A pixel is filled if its center is inside of the polygon.
+     *
+     * @param xPoints The x coordinates of the points
+     * @param yPoints The y coordinates of the points
+     * @param nPoints The amount of points
+     * @param rule    The rule that decides which parts of a self-intersecting polygon should be filled
+     * @param color   The fill color
+     * @param alpha   The alpha of the polygon
+     */
+    public void fillPolygon(final int[] xPoints,
+                            final int[] yPoints,
+                            final int nPoints,
+                            final FillRule rule,
+                            final byte color,
+                            final float alpha) {
+        if (nPoints < 3) {
+            return;
+        }
+
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < nPoints; i++) {
+            minY = Math.min(minY, yPoints[i]);
+            maxY = Math.max(maxY, yPoints[i]);
+        }
+        minY = Math.max(0, minY);
+        maxY = Math.min(this.getHeight() - 1, maxY);
+
+        final double[] crossings = new double[nPoints];
+        final int[] windings = new int[nPoints];
+        for (int y = minY; y <= maxY; y++) {
+            // Find all the edges that cross the center of this row
+            final double centerY = y + 0.5;
+            int count = 0;
+            for (int i = 0; i < nPoints; i++) {
+                final int j = (i + 1) % nPoints;
+                final int y0 = yPoints[i];
+                final int y1 = yPoints[j];
+                if (y0 == y1 || centerY < Math.min(y0, y1) || centerY >= Math.max(y0, y1)) {
+                    continue;
+                }
+
+                final double crossing = xPoints[i] + (centerY - y0) * (xPoints[j] - xPoints[i]) / (double) (y1 - y0);
+                final int winding = y1 > y0 ? 1 : -1;
+                // Insertion sort, polygons usually don't have a lot of crossings per row
+                int k = count++;
+                while (k > 0 && crossings[k - 1] > crossing) {
+                    crossings[k] = crossings[k - 1];
+                    windings[k] = windings[k - 1];
+                    k--;
+                }
+                crossings[k] = crossing;
+                windings[k] = winding;
+            }
+
+            int inside = 0;
+            for (int i = 0; i < count - 1; i++) {
+                inside = rule == FillRule.EVEN_ODD ? inside ^ 1 : inside + windings[i];
+                if (inside != 0) {
+                    // Fill every pixel whose center is between the two crossings
+                    final int from = (int) Math.ceil(crossings[i] - 0.5);
+                    final int to = (int) Math.ceil(crossings[i + 1] - 0.5);
+                    this.fillSpan(from, y, to - from, color, alpha);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws and fills a rectangle with rounded corners
+     *
+     * @param x      The x coordinate
+     * @param y      The y coordinate
+     * @param w      The width
+     * @param h      The height
+     * @param radius The radius of the corners
+     * @param color  The fill color
+     * @param alpha  The alpha of the rectangle
+     */
+    public void fillRoundRect(final int x, final int y, final int w, final int h, final int radius, final byte color, final float alpha) {
+        for (int row = Math.max(0, -y); row < h && y + row < this.getHeight(); row++) {
+            final int inset = this.roundRectInset(row, w, h, radius);
+            this.fillSpan(x + inset, y + row, w - inset * 2, color, alpha);
+        }
+    }
+
+    /**
+     * Outlines a rectangle with rounded corners
+     *
+     * @param x      The x coordinate
+     * @param y      The y coordinate
+     * @param w      The width
+     * @param h      The height
+     * @param radius The radius of the corners
+     * @param color  The outline color
+     * @param alpha  The alpha of the rectangle
+     */
+    public void drawRoundRect(final int x, final int y, final int w, final int h, final int radius, final byte color, final float alpha) {
+        for (int row = Math.max(0, -y); row < h && y + row < this.getHeight(); row++) {
+            final int outer = this.roundRectInset(row, w, h, radius);
+            if (row == 0 || row == h - 1) {
+                this.fillSpan(x + outer, y + row, w - outer * 2, color, alpha);
+                continue;
+            }
+
+            // The outline is everything between the outer shape and the shape that's one pixel smaller
+            final int inner = 1 + this.roundRectInset(row - 1, w - 2, h - 2, radius - 1);
+            final int len = Math.max(1, inner - outer);
+            if (len * 2 >= w - outer * 2) {
+                this.fillSpan(x + outer, y + row, w - outer * 2, color, alpha);
+            } else {
+                this.fillSpan(x + outer, y + row, len, color, alpha);
+                this.fillSpan(x + w - outer - len, y + row, len, color, alpha);
+            }
+        }
+    }
+
+    // Calculates how far a row of a rounded rectangle is indented on each side
+    private int roundRectInset(final int row, final int w, final int h, final int radius) {
+        final int r = Math.min(radius, Math.min(w, h) / 2);
+        if (r <= 0) {
+            return 0;
+        }
+
+        final double dy;
+        if (row < r) {
+            dy = r - row - 0.5;
+        } else if (row >= h - r) {
+            dy = row - (h - r) + 0.5;
+        } else {
+            return 0;
+        }
+        return (int) Math.round(r - Math.sqrt(r * r - dy * dy));
+    }
+
     /**
      * Replace a color with another color across the whole buffer
      *
@@ -774,12 +1602,19 @@ public abstract class MapGraphics<C, P> {
      * @param color          The color to replace the other color with
      */
     public void replace(final byte colorToReplace, final byte color) {
-        for (int x = 0; x < this.getWidth(); x++) {
-            for (int y = 0; y < this.getHeight(); y++) {
-                if (this.getPixel(x, y) == colorToReplace) {
-                    this.setPixel(x, y, 1f, color);
+        final byte[] row = new byte[this.getWidth()];
+        for (int y = 0; y < this.getHeight(); y++) {
+            this.readSpan(0, y, row, 0, row.length);
+            boolean changed = false;
+            for (int x = 0; x < row.length; x++) {
+                if (row[x] == colorToReplace) {
+                    row[x] = color;
+                    changed = true;
                 }
             }
+            if (changed) {
+                this.blitSpan(0, y, row, 0, row.length, false);
+            }
         }
     }
 
@@ -822,6 +1657,9 @@ public abstract class MapGraphics<C, P> {
      * Composite two colors together
      * <p>
      * See <a href="https://en.wikipedia.org/wiki/Alpha_compositing">https://en.wikipedia.org/wiki/Alpha_compositing</a>
+     * <p>
+     * Looks the result up in the {@link dev.cerus.maps.api.colormap.CompositeTable} of the current color map,
+     * so the alpha is quantized to the amount of levels of that table.
      *
      * @param source The new color
      * @param dest   The old color (e.g. background)
@@ -842,18 +1680,7 @@ public abstract class MapGraphics<C, P> {
                 return source;
             }
 
-            return CompositeColorCache.getCompositeOrCompute(source, dest, alpha, () -> {
-                //final Color newColor = MapColor.mapColorToRgb(source);
-                //final Color oldColor = MapColor.mapColorToRgb(dest);
-                final Color newColor = ColorMaps.current().mapColorToRgb(source);
-                final Color oldColor = ColorMaps.current().mapColorToRgb(dest);
-                final int[] compositedColor = new int[] {
-                        this.composite(newColor.getRed(), oldColor.getRed(), alpha),
-                        this.composite(newColor.getGreen(), oldColor.getGreen(), alpha),
-                        this.composite(newColor.getBlue(), oldColor.getBlue(), alpha)
-                };
-                return ColorCache.rgbToMap(compositedColor[0], compositedColor[1], compositedColor[2]);
-            });
+            return ColorMaps.current().getCompositeTable().composite(source, dest, alpha);
         }
     }
 
@@ -947,19 +1774,95 @@ public abstract class MapGraphics<C, P> {
     public abstract int getHeight();
 
     public boolean hasDirectAccessCapabilities() {
-        return this.getDirectAccessData() != null;
+        return this.getDirectAccessDataUnmarked() != null;
+    }
+
+    /**
+     * Marks an area of this buffer as modified. Implementations that keep track of modifications use
+     * this to skip unchanged areas when rendering, all the others simply ignore it.
+     * <p>
+     * {@link #getDirectAccessData()} marks the whole buffer, so callers that write into the array don't need to call
+     * this. {@link #setPixel(int, int, float, byte)} takes care of this automatically.
+     *
+     * @param x      The x coordinate
+     * @param y      The y coordinate
+     * @param width  The width of the area
+     * @param height The height of the area
+     */
+    public void markDirty(final int x, final int y, final int width, final int height) {
     }
 
+    /**
+     * Marks the whole buffer as modified
+     * <p>
+     * See {@link #markDirty(int, int, int, int)}
+     */
+    public void markDirty() {
+        this.markDirty(0, 0, this.getWidth(), this.getHeight());
+    }
+
+    /**
+     * Get the backing array of this buffer. Use {@link #index(int, int)} to access pixels.
+     * <p>
+     * Implementations that keep track of modifications mark the whole buffer as modified, because
+     * the caller might write into the array.
+     *
+     * @return The backing array or null if this buffer does not support direct access
+     */
     public byte[] getDirectAccessData() {
         return null;
     }
 
+    /**
+     * Get the backing array of this buffer without marking anything as modified. Callers that write
+     * into the array have to call {@link #markDirty(int, int, int, int)} themselves.
+     * <p>
+     * Defaults to {@link #getDirectAccessData()}.
+     *
+     * @return The backing array or null if this buffer does not support direct access
+     */
+    protected byte[] getDirectAccessDataUnmarked() {
+        return this.getDirectAccessData();
+    }
+
+    /**
+     * Get the layout of the direct access data
+     * <p>
+     * Defaults to {@link BufferLayout#SQUARE} to stay compatible with older implementations.
+     *
+     * @return The buffer layout
+     */
+    public BufferLayout getLayout() {
+        return BufferLayout.SQUARE;
+    }
+
+    /**
+     * Calculate the index of a pixel in the direct access data
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     *
+     * @return The array index
+     */
     public int index(final int x, final int y) {
         return this.index(x, y, this.getWidth(), this.getHeight());
     }
 
+    /**
+     * Calculate the index of a pixel in the direct access data
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param w The width of the buffer
+     * @param h The height of the buffer
+     *
+     * @return The array index
+     *
+     * @deprecated the width and height are always the ones of this buffer, use {@link #index(int, int)} instead
+     */
+    @Deprecated
     public int index(final int x, final int y, final int w, final int h) {
-        return x + y * Math.max(w, h);
+        return this.getLayout().index(x, y, w, h);
     }
 
 }
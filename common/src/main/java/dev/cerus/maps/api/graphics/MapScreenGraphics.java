@@ -2,6 +2,7 @@ package dev.cerus.maps.api.graphics;
 
 import dev.cerus.maps.api.ClientsideMap;
 import dev.cerus.maps.api.MapScreen;
+import java.util.Arrays;
 
 /**
  * Graphics implementation for map screens
@@ -53,6 +54,61 @@ public class MapScreenGraphics extends MapGraphics<MapScreen, ClientsideMap[][]>
         return graphics.setPixel(x % 128, y % 128, alpha, color);
     }
 
+    @Override
+    protected void fillSpan(final int x, final int y, final int len, final byte color, final float alpha) {
+        this.forEachTileSpan(x, y, len, (graphics, tileX, tileY, off, n) ->
+                graphics.fillSpan(tileX, tileY, n, color, alpha));
+    }
+
+    @Override
+    protected void blitSpan(final int x, final int y, final byte[] src, final int off, final int len, final boolean ignoreTransparent) {
+        this.forEachTileSpan(x, y, len, (graphics, tileX, tileY, spanOff, n) ->
+                graphics.blitSpan(tileX, tileY, src, off + spanOff, n, ignoreTransparent));
+    }
+
+    @Override
+    protected void blendSpan(final int x, final int y, final byte[] src, final int off, final int len, final float alpha) {
+        this.forEachTileSpan(x, y, len, (graphics, tileX, tileY, spanOff, n) ->
+                graphics.blendSpan(tileX, tileY, src, off + spanOff, n, alpha));
+    }
+
+    @Override
+    protected void readSpan(final int x, final int y, final byte[] dst, final int off, final int len) {
+        Arrays.fill(dst, off, off + len, (byte) 0);
+        this.forEachTileSpan(x, y, len, (graphics, tileX, tileY, spanOff, n) ->
+                graphics.readSpan(tileX, tileY, dst, off + spanOff, n));
+    }
+
+    /**
+     * Splits a horizontal span into the parts that belong to the individual maps
+     *
+     * @param x      The x coordinate of the first pixel
+     * @param y      The y coordinate
+     * @param len    The amount of pixels
+     * @param action The action to run for every part
+     */
+    private void forEachTileSpan(final int x, final int y, final int len, final TileSpanAction action) {
+        if (y < 0 || y >= this.getHeight()) {
+            return;
+        }
+        final int arrY = y / 128;
+        for (int i = Math.max(0, -x); i < len && x + i < this.getWidth(); ) {
+            final int cx = x + i;
+            final int n = Math.min(len - i, 128 - cx % 128);
+            action.accept(this.graphicsArray[cx / 128][arrY], cx % 128, y % 128, i, n);
+            i += n;
+        }
+    }
+
+    @Override
+    public void markDirty(final int x, final int y, final int width, final int height) {
+        for (int arrX = Math.max(0, x / 128); arrX < this.graphicsArray.length && arrX * 128 < x + width; arrX++) {
+            for (int arrY = Math.max(0, y / 128); arrY < this.graphicsArray[arrX].length && arrY * 128 < y + height; arrY++) {
+                this.graphicsArray[arrX][arrY].markDirty(x - arrX * 128, y - arrY * 128, width, height);
+            }
+        }
+    }
+
     @Override
     public byte getPixel(final int x, final int y) {
         if (x < 0 || y < 0) {
@@ -94,4 +150,11 @@ public class MapScreenGraphics extends MapGraphics<MapScreen, ClientsideMap[][]>
         return this.height * 128;
     }
 
+    @FunctionalInterface
+    private interface TileSpanAction {
+
+        void accept(ClientsideMapGraphics graphics, int tileX, int tileY, int off, int len);
+
+    }
+
 }
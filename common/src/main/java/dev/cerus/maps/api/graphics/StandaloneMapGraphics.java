@@ -9,12 +9,18 @@ public class StandaloneMapGraphics extends MapGraphics<MapGraphics<?, ?>, Vec2>
 
     private final int width;
     private final int height;
+    private final BufferLayout layout;
     private final byte[] data;
 
     public StandaloneMapGraphics(final int width, final int height) {
+        this(width, height, BufferLayout.PACKED);
+    }
+
+    public StandaloneMapGraphics(final int width, final int height, final BufferLayout layout) {
         this.width = width;
         this.height = height;
-        this.data = new byte[Math.max(width, height) * Math.max(width, height)];
+        this.layout = layout;
+        this.data = new byte[layout.size(width, height)];
     }
 
     public static StandaloneMapGraphics copyOf(final MapGraphics<?, ?> graphics) {
@@ -22,17 +28,9 @@ public class StandaloneMapGraphics extends MapGraphics<MapGraphics<?, ?>, Vec2>
             throw new IllegalArgumentException("Graphics needs direct access capabilities");
         }
 
+        // Placing without transparency checks will copy the rows directly
         final StandaloneMapGraphics out = new StandaloneMapGraphics(graphics.getWidth(), graphics.getHeight());
-        for (int r = 0; r < out.height; r++) {
-            final int pos = out.index(0, r, out.width, out.height);
-            System.arraycopy(
-                    graphics.getDirectAccessData(),
-                    pos,
-                    out.data,
-                    pos,
-                    out.width
-            );
-        }
+        out.place(graphics, 0, 0, 1f, false);
         return out;
     }
 
@@ -54,7 +52,7 @@ public class StandaloneMapGraphics extends MapGraphics<MapGraphics<?, ?>, Vec2>
 
     private byte setPixelInternal(final int x, final int y, final byte color) {
         final byte bef = this.getPixel(x, y);
-        this.data[this.index(x, y, this.width, this.height)] = color;
+        this.data[this.layout.index(x, y, this.width, this.height)] = color;
         return bef;
     }
 
@@ -68,26 +66,19 @@ public class StandaloneMapGraphics extends MapGraphics<MapGraphics<?, ?>, Vec2>
 
     private byte getPixelDirect(final int x, final int y) {
         //return this.data[x * this.height + y];
-        return this.data[this.index(x, y, this.width, this.height)];
+        return this.data[this.layout.index(x, y, this.width, this.height)];
     }
 
     @Override
     public void renderOnto(final MapGraphics<?, ?> renderTarget, final Vec2 params) {
-        for (int x = 0; x < this.width; x++) {
-            for (int y = 0; y < this.height; y++) {
-                renderTarget.setPixel(params.x + x, params.y + y, this.getPixel(x, y));
-            }
-        }
+        // Transparent pixels overwrite the target as well
+        renderTarget.place(this, params.x, params.y, 1f, false);
     }
 
     @Override
     public MapGraphics<MapGraphics<?, ?>, Vec2> copy() {
-        final StandaloneMapGraphics copy = new StandaloneMapGraphics(this.width, this.height);
-        for (int x = 0; x < this.width; x++) {
-            for (int y = 0; y < this.height; y++) {
-                copy.setPixelInternal(x, y, this.getPixelDirect(x, y));
-            }
-        }
+        final StandaloneMapGraphics copy = new StandaloneMapGraphics(this.width, this.height, this.layout);
+        System.arraycopy(this.data, 0, copy.data, 0, this.data.length);
         return copy;
     }
 
@@ -96,6 +87,11 @@ public class StandaloneMapGraphics extends MapGraphics<MapGraphics<?, ?>, Vec2>
         return this.data;
     }
 
+    @Override
+    public BufferLayout getLayout() {
+        return this.layout;
+    }
+
     @Override
     public int getWidth() {
         return this.width;
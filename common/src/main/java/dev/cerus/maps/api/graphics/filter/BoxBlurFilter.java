@@ -3,14 +3,20 @@ package dev.cerus.maps.api.graphics.filter;
 import dev.cerus.maps.api.colormap.ColorMaps;
 import dev.cerus.maps.api.graphics.ColorCache;
 import dev.cerus.maps.api.graphics.MapGraphics;
-import java.awt.Color;
+import java.util.Arrays;
 
 /**
  * Performs box blur on an area. Can be reused
+ * <p>
+ * The blur is separable: every pass blurs the rows and then the columns of the area with a sliding window,
+ * so the cost per pixel does not depend on the radius. All passes work on rgb planes, the results are only
+ * converted to map colors once at the end. Pixels near the edges of the area only average the pixels
+ * that are inside of the area.
  */
-public class BoxBlurFilter implements Filter {
+public class BoxBlurFilter implements Filter, RgbFilter {
 
     private final int passes;
+    private final int radius;
     private final TransparencyHandling transparencyHandling;
 
     public BoxBlurFilter() {
@@ -18,76 +24,164 @@ public class BoxBlurFilter implements Filter {
     }
 
     public BoxBlurFilter(final int passes, final TransparencyHandling transparencyHandling) {
+        this(passes, 1, transparencyHandling);
+    }
+
+    public BoxBlurFilter(final int passes, final int radius, final TransparencyHandling transparencyHandling) {
         if (passes <= 0) {
             throw new IllegalArgumentException("passes <= 0");
         }
+        if (radius <= 0) {
+            throw new IllegalArgumentException("radius <= 0");
+        }
         this.passes = passes;
+        this.radius = radius;
         this.transparencyHandling = transparencyHandling;
     }
 
     // https://en.wikipedia.org/wiki/Box_blur
     @Override
     public byte apply(final MapGraphics<?, ?> graphics, final int x, final int y, final int minX, final int maxX, final int minY, final int maxY) {
-        if (x < minX + 1 || y < minY + 1 || x + 1 == maxX || y + 1 == maxY
-                || (graphics.getPixel(x, y) >= 0 && graphics.getPixel(x, y) <= 3)) {
-            return graphics.getPixel(x, y);
+        final byte color = graphics.getPixel(x, y);
+        final int[] palette = ColorMaps.current().getRgbTable();
+        if (graphics.isTransparent(color) || RgbBuffer.isTransparent(color, palette)) {
+            return color;
         }
 
-        try {
-            final int[] avg = this.averageNearestNinePixels(graphics, x, y);
-            return ColorCache.rgbToMap(avg[0], avg[1], avg[2]);
-        } catch (final KeepOriginalSignal ignored) {
-            return graphics.getPixel(x, y);
+        // Single pass over the window of this pixel
+        final int fromX = Math.max(minX, x - this.radius);
+        final int fromY = Math.max(minY, y - this.radius);
+        final RgbBuffer window = RgbBuffer.read(graphics, fromX, fromY,
+                Math.min(maxX, x + this.radius + 1) - fromX, Math.min(maxY, y + this.radius + 1) - fromY);
+        final int[] sums = new int[5];
+        for (int i = 0; i < window.getWidth() * window.getHeight(); i++) {
+            this.accumulate(window, i, sums, 1);
         }
+        if (sums[3] == 0 || (this.transparencyHandling == TransparencyHandling.KEEP_ORIGINAL && sums[4] > 0)) {
+            return color;
+        }
+
+        final int r = sums[0] / sums[3];
+        final int g = sums[1] / sums[3];
+        final int b = sums[2] / sums[3];
+        return palette[color & 0xFF] == (r << 16 | g << 8 | b) ? color : ColorCache.rgbToMap(r, g, b);
     }
 
-    private int[] averageNearestNinePixels(final MapGraphics<?, ?> graphics, final int x, final int y) {
-        return this.average(
-                this.mapToRgb(graphics.getPixel(x - 1, y + 1)),
-                this.mapToRgb(graphics.getPixel(x, y + 1)),
-                this.mapToRgb(graphics.getPixel(x + 1, y + 1)),
-                this.mapToRgb(graphics.getPixel(x - 1, y)),
-                this.mapToRgb(graphics.getPixel(x, y)),
-                this.mapToRgb(graphics.getPixel(x + 1, y)),
-                this.mapToRgb(graphics.getPixel(x - 1, y - 1)),
-                this.mapToRgb(graphics.getPixel(x, y - 1)),
-                this.mapToRgb(graphics.getPixel(x + 1, y - 1))
-        );
+    @Override
+    public void applyToArea(final MapGraphics<?, ?> graphics, final int x, final int y, final int width, final int height) {
+        new FilterPipeline().addStage(this).apply(graphics, x, y, width, height);
     }
 
-    private int[] average(final int... colors) {
-        int r = 0;
-        int g = 0;
-        int b = 0;
-        int count = 0;
-        for (final int rgb : colors) {
-            if (rgb == -1) {
-                continue;
+    /**
+     * Blur rgb planes in place
+     *
+     * @param buffer The planes to blur
+     */
+    @Override
+    public void apply(final RgbBuffer buffer) {
+        final int w = buffer.getWidth();
+        final int h = buffer.getHeight();
+        final int size = w * h;
+
+        // Weighted sums of red, green, blue, the weight and the amount of transparent pixels
+        final int[][] rows = new int[5][size];
+        final int[][] totals = new int[5][size];
+        final int[] sums = new int[5];
+        final boolean[] keep = new boolean[size];
+        final int[] originalRed = buffer.getRed().clone();
+        final int[] originalGreen = buffer.getGreen().clone();
+        final int[] originalBlue = buffer.getBlue().clone();
+
+        for (int pass = 0; pass < this.passes; pass++) {
+            // Horizontal pass, the window slides along every row
+            for (int ay = 0; ay < h; ay++) {
+                final int row = ay * w;
+                Arrays.fill(sums, 0);
+                for (int ax = 0; ax < Math.min(this.radius, w); ax++) {
+                    this.accumulate(buffer, row + ax, sums, 1);
+                }
+                for (int ax = 0; ax < w; ax++) {
+                    if (ax + this.radius < w) {
+                        this.accumulate(buffer, row + ax + this.radius, sums, 1);
+                    }
+                    if (ax - this.radius - 1 >= 0) {
+                        this.accumulate(buffer, row + ax - this.radius - 1, sums, -1);
+                    }
+                    for (int c = 0; c < 5; c++) {
+                        rows[c][row + ax] = sums[c];
+                    }
+                }
+            }
+
+            // Vertical pass over the row sums, the window slides along every column
+            for (int ax = 0; ax < w; ax++) {
+                Arrays.fill(sums, 0);
+                for (int ay = 0; ay < Math.min(this.radius, h); ay++) {
+                    for (int c = 0; c < 5; c++) {
+                        sums[c] += rows[c][ay * w + ax];
+                    }
+                }
+                for (int ay = 0; ay < h; ay++) {
+                    if (ay + this.radius < h) {
+                        for (int c = 0; c < 5; c++) {
+                            sums[c] += rows[c][(ay + this.radius) * w + ax];
+                        }
+                    }
+                    if (ay - this.radius - 1 >= 0) {
+                        for (int c = 0; c < 5; c++) {
+                            sums[c] -= rows[c][(ay - this.radius - 1) * w + ax];
+                        }
+                    }
+                    for (int c = 0; c < 5; c++) {
+                        totals[c][ay * w + ax] = sums[c];
+                    }
+                }
+            }
+
+            // Replace every pixel with the average of its window
+            for (int i = 0; i < size; i++) {
+                if (buffer.isTransparent(i)) {
+                    continue;
+                }
+                if (pass == 0 && this.transparencyHandling == TransparencyHandling.KEEP_ORIGINAL && totals[4][i] > 0) {
+                    // Transparent pixels never change, so this is the same for all passes
+                    keep[i] = true;
+                }
+                if (keep[i] || totals[3][i] == 0) {
+                    buffer.getRed()[i] = originalRed[i];
+                    buffer.getGreen()[i] = originalGreen[i];
+                    buffer.getBlue()[i] = originalBlue[i];
+                    continue;
+                }
+                buffer.getRed()[i] = totals[0][i] / totals[3][i];
+                buffer.getGreen()[i] = totals[1][i] / totals[3][i];
+                buffer.getBlue()[i] = totals[2][i] / totals[3][i];
             }
-            final Color color = new Color(rgb);
-            r += color.getRed();
-            g += color.getGreen();
-            b += color.getBlue();
-            count++;
         }
-        return new int[] {r / count, g / count, b / count};
     }
 
-    private int mapToRgb(final byte color) {
-        if (color >= 0 && color <= 3) {
-            if (this.transparencyHandling == TransparencyHandling.TREAT_AS_WHITE) {
-                return new Color(255, 255, 255, 0).getRGB();
-            } else if (this.transparencyHandling == TransparencyHandling.TREAT_AS_BLACK) {
-                return new Color(0, 0, 0, 0).getRGB();
-            } else if (this.transparencyHandling == TransparencyHandling.IGNORE) {
-                return -1;
-            } else if (this.transparencyHandling == TransparencyHandling.KEEP_ORIGINAL) {
-                // This seemed like the easiest way to me
-                throw new KeepOriginalSignal();
+    // Adds (or removes) a pixel to the window sums
+    private void accumulate(final RgbBuffer buffer, final int index, final int[] sums, final int sign) {
+        if (!buffer.isTransparent(index)) {
+            sums[0] += sign * buffer.getRed()[index];
+            sums[1] += sign * buffer.getGreen()[index];
+            sums[2] += sign * buffer.getBlue()[index];
+            sums[3] += sign;
+            return;
+        }
+
+        sums[4] += sign;
+        switch (this.transparencyHandling) {
+            case TREAT_AS_WHITE -> {
+                sums[0] += sign * 255;
+                sums[1] += sign * 255;
+                sums[2] += sign * 255;
+                sums[3] += sign;
+            }
+            case TREAT_AS_BLACK -> sums[3] += sign;
+            case KEEP_ORIGINAL, IGNORE -> {
             }
         }
-        //return MapColor.mapColorToRgb(color).getRGB();
-        return ColorMaps.current().mapColorToRgb(color).getRGB();
     }
 
     @Override
@@ -95,6 +189,20 @@ public class BoxBlurFilter implements Filter {
         return this.passes;
     }
 
+    /**
+     * Every pass can move colors by the radius of the window
+     *
+     * @return The radius of the window times the amount of passes
+     */
+    @Override
+    public int radius() {
+        return this.radius * this.passes;
+    }
+
+    public int windowRadius() {
+        return this.radius;
+    }
+
     public enum TransparencyHandling {
         TREAT_AS_WHITE,
         TREAT_AS_BLACK,
@@ -102,7 +210,4 @@ public class BoxBlurFilter implements Filter {
         IGNORE
     }
 
-    private static class KeepOriginalSignal extends RuntimeException {
-    }
-
 }
@@ -24,6 +24,28 @@ public interface Filter {
      */
     byte apply(MapGraphics<?, ?> graphics, int x, int y, int minX, int maxX, int minY, int maxY);
 
+    /**
+     * Apply this filter to a rectangular area. The default implementation calls
+     * {@link #apply(MapGraphics, int, int, int, int, int, int)} for every pixel and writes the result
+     * right away, so later pixels see the results of earlier pixels. Filters that need the
+     * original neighbours should override this.
+     *
+     * @param graphics The graphics to apply this filter to
+     * @param x        X coordinate
+     * @param y        Y coordinate
+     * @param width    Area width
+     * @param height   Area height
+     */
+    default void applyToArea(final MapGraphics<?, ?> graphics, final int x, final int y, final int width, final int height) {
+        for (int unused = 0; unused < this.passes(); unused++) {
+            for (int ax = 0; ax < width; ax++) {
+                for (int ay = 0; ay < height; ay++) {
+                    graphics.setPixel(ax + x, ay + y, this.apply(graphics, ax + x, ay + y, x, x + width, y, y + height));
+                }
+            }
+        }
+    }
+
     /**
      * The amount of times this filter should be applied
      *
@@ -0,0 +1,154 @@
+package dev.cerus.maps.api.graphics.filter;
+
+import dev.cerus.maps.api.graphics.MapGraphics;
+import dev.cerus.maps.api.graphics.StandaloneMapGraphics;
+import dev.cerus.maps.api.graphics.image.ImageConverter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a chain of filters on an area
+ * <p>
+ * The area is converted to rgb planes once, every stage works on the same planes and the result is only
+ * converted back to map colors at the end. Chaining filters with {@link MapGraphics#applyFilterToArea(Filter, int, int, int, int)}
+ * would round every intermediate result to the palette instead. Can be reused.
+ */
+public final class FilterPipeline {
+
+    private final List<RgbFilter> stages = new ArrayList<>();
+
+    /**
+     * Create a pipeline out of filters
+     *
+     * @param filters The filters in the order they should be applied
+     *
+     * @return The new pipeline
+     */
+    public static FilterPipeline of(final Filter... filters) {
+        final FilterPipeline pipeline = new FilterPipeline();
+        for (final Filter filter : filters) {
+            pipeline.add(filter);
+        }
+        return pipeline;
+    }
+
+    /**
+     * Turn a filter into a stage. Filters that implement {@link RgbFilter} are returned as they are.
+     * <p>
+     * Other filters are applied to a temporary buffer that has the size of the area, so they see
+     * coordinates relative to the area. Only the pixels that such a filter changes are rounded to the palette.
+     *
+     * @param filter The filter
+     *
+     * @return The stage
+     */
+    public static RgbFilter adapt(final Filter filter) {
+        if (filter instanceof RgbFilter rgbFilter) {
+            return rgbFilter;
+        }
+        return buffer -> {
+            final int size = buffer.getWidth() * buffer.getHeight();
+            final byte[] before = new byte[size];
+            final StandaloneMapGraphics graphics = new StandaloneMapGraphics(buffer.getWidth(), buffer.getHeight());
+            for (int i = 0; i < size; i++) {
+                before[i] = buffer.getColor(i);
+                graphics.setPixel(i % buffer.getWidth(), i / buffer.getWidth(), 1f, before[i]);
+            }
+
+            filter.applyToArea(graphics, 0, 0, buffer.getWidth(), buffer.getHeight());
+            for (int i = 0; i < size; i++) {
+                final byte color = graphics.getPixel(i % buffer.getWidth(), i / buffer.getWidth());
+                if (color != before[i]) {
+                    buffer.setColor(i, color);
+                }
+            }
+        };
+    }
+
+    /**
+     * Add a filter to the end of this pipeline
+     *
+     * @param filter The filter
+     *
+     * @return This pipeline
+     */
+    public FilterPipeline add(final Filter filter) {
+        this.stages.add(adapt(filter));
+        return this;
+    }
+
+    /**
+     * Add a stage to the end of this pipeline
+     *
+     * @param stage The stage
+     *
+     * @return This pipeline
+     */
+    public FilterPipeline addStage(final RgbFilter stage) {
+        this.stages.add(stage);
+        return this;
+    }
+
+    /**
+     * Run all stages on a rectangular area. Parts of the area that are out of bounds are ignored.
+     *
+     * @param graphics The graphics to apply the pipeline to
+     * @param x        X coordinate
+     * @param y        Y coordinate
+     * @param width    Area width
+     * @param height   Area height
+     */
+    public void apply(final MapGraphics<?, ?> graphics, final int x, final int y, final int width, final int height) {
+        final int fromX = Math.max(0, x);
+        final int fromY = Math.max(0, y);
+        final int toX = Math.min(graphics.getWidth(), x + width);
+        final int toY = Math.min(graphics.getHeight(), y + height);
+        if (fromX >= toX || fromY >= toY || this.stages.isEmpty()) {
+            return;
+        }
+
+        final RgbBuffer buffer = RgbBuffer.read(graphics, fromX, fromY, toX - fromX, toY - fromY);
+        for (final RgbFilter stage : this.stages) {
+            run(stage, buffer);
+        }
+        buffer.write(graphics, fromX, fromY);
+    }
+
+    /**
+     * Apply a stage to a buffer. Stages with a known radius are split into stripes that are processed
+     * in parallel, every stripe is processed together with enough extra rows above and below it
+     * to produce the same result as processing the whole buffer at once.
+     *
+     * @param stage  The stage
+     * @param buffer The buffer to modify
+     */
+    public static void run(final RgbFilter stage, final RgbBuffer buffer) {
+        final int radius = stage.radius();
+        final int height = buffer.getHeight();
+        if (radius < 0) {
+            stage.apply(buffer);
+            return;
+        }
+
+        // Stripes read from the buffer, so the results have to go somewhere else until all stripes are done
+        final RgbBuffer result = buffer.copyRows(0, height);
+        // Keep the halos small compared to the stripes
+        ImageConverter.forEachStripe(0, height, buffer.getWidth(), radius * 4, (fromRow, toRow) -> {
+            if (fromRow == 0 && toRow == height) {
+                stage.apply(result);
+                return;
+            }
+            final int haloFrom = Math.max(0, fromRow - radius);
+            final int haloTo = Math.min(height, toRow + radius);
+            final RgbBuffer stripe = buffer.copyRows(haloFrom, haloTo);
+            stage.apply(stripe);
+            result.copyRows(stripe, fromRow - haloFrom, fromRow, toRow - fromRow);
+        });
+        buffer.copyRows(result, 0, 0, height);
+    }
+
+    public List<RgbFilter> getStages() {
+        return List.copyOf(this.stages);
+    }
+
+}
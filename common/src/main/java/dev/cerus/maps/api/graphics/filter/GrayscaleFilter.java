@@ -3,22 +3,18 @@ package dev.cerus.maps.api.graphics.filter;
 import dev.cerus.maps.api.colormap.ColorMaps;
 import dev.cerus.maps.api.graphics.ColorCache;
 import dev.cerus.maps.api.graphics.MapGraphics;
-import java.awt.Color;
 
-public class GrayscaleFilter implements Filter {
+public class GrayscaleFilter implements Filter, RgbFilter {
 
     @Override
     public byte apply(final MapGraphics<?, ?> graphics, final int x, final int y, final int minX, final int maxX, final int minY, final int maxY) {
         final byte pixel = graphics.getPixel(x, y);
-        if (graphics.isTransparent(pixel)) {
+        final int[] palette = ColorMaps.current().getRgbTable();
+        if (graphics.isTransparent(pixel) || RgbBuffer.isTransparent(pixel, palette)) {
             return pixel;
         }
-        //final Color color = MapColor.mapColorToRgb(pixel);
-        final Color color = ColorMaps.current().mapColorToRgb(pixel);
-        if (color == null) {
-            return pixel;
-        }
-        final int avg = (color.getRed() + color.getGreen() + color.getBlue()) / 3;
+        final int rgb = palette[pixel & 0xFF];
+        final int avg = ((rgb >> 16 & 0xFF) + (rgb >> 8 & 0xFF) + (rgb & 0xFF)) / 3;
         return ColorCache.rgbToMap(
                 avg,
                 avg,
@@ -26,6 +22,31 @@ public class GrayscaleFilter implements Filter {
         );
     }
 
+    @Override
+    public void applyToArea(final MapGraphics<?, ?> graphics, final int x, final int y, final int width, final int height) {
+        new FilterPipeline().addStage(this).apply(graphics, x, y, width, height);
+    }
+
+    @Override
+    public void apply(final RgbBuffer buffer) {
+        final int[] red = buffer.getRed();
+        final int[] green = buffer.getGreen();
+        final int[] blue = buffer.getBlue();
+        for (int i = 0; i < red.length; i++) {
+            if (!buffer.isTransparent(i)) {
+                final int avg = (red[i] + green[i] + blue[i]) / 3;
+                red[i] = avg;
+                green[i] = avg;
+                blue[i] = avg;
+            }
+        }
+    }
+
+    @Override
+    public int radius() {
+        return 0;
+    }
+
     @Override
     public int passes() {
         return 1;
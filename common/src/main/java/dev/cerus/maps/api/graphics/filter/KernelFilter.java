@@ -0,0 +1,357 @@
+package dev.cerus.maps.api.graphics.filter;
+
+import dev.cerus.maps.api.graphics.MapGraphics;
+
+/**
+ * Convolves an area with a kernel. Can be reused
+ * <p>
+ * Kernels that are the product of a column and a row vector (like a gaussian) are detected automatically
+ * and applied as a horizontal and a vertical 1-D pass. Pixels outside of the area are treated like the closest
+ * pixel inside of the area. Transparent pixels are never modified. If all weights of a kernel are positive,
+ * transparent neighbours are left out of the weighted average, otherwise they count as black.
+ * <p>
+ * Filters with two kernels (like {@link #sobel()}) output the gradient magnitude {@code sqrt(a² + b²)}.
+ */
+public class KernelFilter implements Filter, RgbFilter {
+
+    // Relative tolerance of the separability check
+    private static final float EPSILON = 1e-5f;
+
+    private final Kernel[] kernels;
+    private final float bias;
+
+    /**
+     * Create a filter with a single kernel
+     *
+     * @param width   The width of the kernel (odd)
+     * @param height  The height of the kernel (odd)
+     * @param weights The weights, row by row
+     */
+    public KernelFilter(final int width, final int height, final float[] weights) {
+        this(width, height, weights, 0f);
+    }
+
+    /**
+     * Create a filter with a single kernel
+     *
+     * @param width   The width of the kernel (odd)
+     * @param height  The height of the kernel (odd)
+     * @param weights The weights, row by row
+     * @param bias    The value that's added to the result of every color component
+     */
+    public KernelFilter(final int width, final int height, final float[] weights, final float bias) {
+        this(new Kernel[] {new Kernel(width, height, weights)}, bias);
+    }
+
+    private KernelFilter(final Kernel[] kernels, final float bias) {
+        this.kernels = kernels;
+        this.bias = bias;
+    }
+
+    /**
+     * Create a filter out of a separable kernel
+     *
+     * @param horizontal The weights of the row vector (odd length)
+     * @param vertical   The weights of the column vector (odd length)
+     *
+     * @return The new filter
+     */
+    public static KernelFilter separable(final float[] horizontal, final float[] vertical) {
+        final float[] weights = new float[horizontal.length * vertical.length];
+        for (int ky = 0; ky < vertical.length; ky++) {
+            for (int kx = 0; kx < horizontal.length; kx++) {
+                weights[ky * horizontal.length + kx] = vertical[ky] * horizontal[kx];
+            }
+        }
+        return new KernelFilter(horizontal.length, vertical.length, weights);
+    }
+
+    /**
+     * Create a gaussian blur
+     *
+     * @param sigma The standard deviation in pixels, the kernel covers three of them in every direction
+     *
+     * @return The new filter
+     */
+    public static KernelFilter gaussian(final float sigma) {
+        final float[] weights = gaussianWeights(sigma);
+        return separable(weights, weights);
+    }
+
+    /**
+     * Create an unsharp mask, which sharpens by adding the difference between the image and a blurred copy
+     *
+     * @param sigma  The standard deviation of the blur in pixels
+     * @param amount How much of the difference is added (0.5 - 2 for best effect)
+     *
+     * @return The new filter
+     */
+    public static KernelFilter unsharpMask(final float sigma, final float amount) {
+        final float[] gaussian = gaussianWeights(sigma);
+        final int size = gaussian.length;
+        final float[] weights = new float[size * size];
+        for (int ky = 0; ky < size; ky++) {
+            for (int kx = 0; kx < size; kx++) {
+                weights[ky * size + kx] = -amount * gaussian[ky] * gaussian[kx];
+            }
+        }
+        weights[size * size / 2] += 1f + amount;
+        return new KernelFilter(size, size, weights);
+    }
+
+    /**
+     * Create a Sobel edge detector. Every color component is replaced by its gradient magnitude.
+     *
+     * @return The new filter
+     */
+    public static KernelFilter sobel() {
+        return new KernelFilter(new Kernel[] {
+                new Kernel(3, 3, new float[] {
+                        -1, 0, 1,
+                        -2, 0, 2,
+                        -1, 0, 1
+                }),
+                new Kernel(3, 3, new float[] {
+                        -1, -2, -1,
+                        0, 0, 0,
+                        1, 2, 1
+                })
+        }, 0f);
+    }
+
+    /**
+     * Create an emboss filter. Light comes from the bottom right.
+     *
+     * @return The new filter
+     */
+    public static KernelFilter emboss() {
+        return new KernelFilter(3, 3, new float[] {
+                -2, -1, 0,
+                -1, 1, 1,
+                0, 1, 2
+        });
+    }
+
+    private static float[] gaussianWeights(final float sigma) {
+        if (sigma <= 0) {
+            throw new IllegalArgumentException("sigma <= 0");
+        }
+        final int radius = (int) Math.ceil(sigma * 3);
+        final float[] weights = new float[radius * 2 + 1];
+        float sum = 0;
+        for (int i = -radius; i <= radius; i++) {
+            weights[i + radius] = (float) Math.exp(-(i * i) / (2 * sigma * sigma));
+            sum += weights[i + radius];
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] /= sum;
+        }
+        return weights;
+    }
+
+    @Override
+    public byte apply(final MapGraphics<?, ?> graphics, final int x, final int y, final int minX, final int maxX, final int minY, final int maxY) {
+        // Neighbours outside of the window are outside of the area as well, so clamping to the window is enough
+        final int radius = this.radius();
+        final int fromX = Math.max(minX, x - radius);
+        final int fromY = Math.max(minY, y - radius);
+        final RgbBuffer window = RgbBuffer.read(graphics, fromX, fromY,
+                Math.min(maxX, x + radius + 1) - fromX, Math.min(maxY, y + radius + 1) - fromY);
+        this.apply(window);
+        return window.getColor((y - fromY) * window.getWidth() + (x - fromX));
+    }
+
+    @Override
+    public void applyToArea(final MapGraphics<?, ?> graphics, final int x, final int y, final int width, final int height) {
+        new FilterPipeline().addStage(this).apply(graphics, x, y, width, height);
+    }
+
+    @Override
+    public void apply(final RgbBuffer buffer) {
+        final int size = buffer.getWidth() * buffer.getHeight();
+        final int[][] planes = {buffer.getRed(), buffer.getGreen(), buffer.getBlue()};
+        final float[][] results = new float[this.kernels.length][];
+        final float[] mask = new float[size];
+        for (int i = 0; i < size; i++) {
+            mask[i] = buffer.isTransparent(i) ? 0 : 1;
+        }
+
+        // Convolve every kernel with the unchanged planes first, then overwrite them
+        final float[][] outputs = new float[3][size];
+        final float[] input = new float[size];
+        for (int c = 0; c < 3; c++) {
+            for (int i = 0; i < size; i++) {
+                input[i] = planes[c][i];
+            }
+            for (int k = 0; k < this.kernels.length; k++) {
+                results[k] = this.kernels[k].convolve(input, buffer.getWidth(), buffer.getHeight());
+            }
+            for (int i = 0; i < size; i++) {
+                outputs[c][i] = this.kernels.length == 1 ? results[0][i] : magnitude(results, i);
+            }
+        }
+
+        // Leave transparent pixels out of positive kernels by dividing by the weight that was actually used
+        final float[] weights = this.kernels.length == 1 && this.kernels[0].positive
+                ? this.kernels[0].convolve(mask, buffer.getWidth(), buffer.getHeight())
+                : null;
+
+        for (int i = 0; i < size; i++) {
+            if (buffer.isTransparent(i) || (weights != null && weights[i] <= 0)) {
+                continue;
+            }
+            final float scale = weights == null ? 1f : this.kernels[0].sum / weights[i];
+            for (int c = 0; c < 3; c++) {
+                planes[c][i] = Math.max(0, Math.min(255, Math.round(outputs[c][i] * scale + this.bias)));
+            }
+        }
+    }
+
+    private static float magnitude(final float[][] results, final int index) {
+        float sum = 0;
+        for (final float[] result : results) {
+            sum += result[index] * result[index];
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    @Override
+    public int radius() {
+        int radius = 0;
+        for (final Kernel kernel : this.kernels) {
+            radius = Math.max(radius, Math.max(kernel.width, kernel.height) / 2);
+        }
+        return radius;
+    }
+
+    @Override
+    public int passes() {
+        return 1;
+    }
+
+    /**
+     * Check if all kernels of this filter are applied as two 1-D passes
+     *
+     * @return True if all kernels are separable
+     */
+    public boolean isSeparable() {
+        for (final Kernel kernel : this.kernels) {
+            if (kernel.row == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Kernel {
+
+        private final int width;
+        private final int height;
+        private final float[] weights;
+        private final float sum;
+        private final boolean positive;
+        // Only set if the kernel is separable
+        private final float[] row;
+        private final float[] column;
+
+        private Kernel(final int width, final int height, final float[] weights) {
+            if (width <= 0 || height <= 0 || width % 2 == 0 || height % 2 == 0) {
+                throw new IllegalArgumentException("Kernel size has to be odd");
+            }
+            if (weights.length != width * height) {
+                throw new IllegalArgumentException("Expected " + (width * height) + " weights, got " + weights.length);
+            }
+            this.width = width;
+            this.height = height;
+            this.weights = weights.clone();
+
+            float sum = 0;
+            boolean positive = true;
+            int pivot = 0;
+            for (int i = 0; i < weights.length; i++) {
+                sum += weights[i];
+                positive &= weights[i] >= 0;
+                if (Math.abs(weights[i]) > Math.abs(weights[pivot])) {
+                    pivot = i;
+                }
+            }
+            this.sum = sum;
+            this.positive = positive && sum > 0;
+
+            // A kernel is separable if it has rank 1. In that case every row is a multiple of the row
+            // that contains the largest weight, and the factors are the column that contains it.
+            final float max = Math.abs(weights[pivot]);
+            final float[] row = new float[width];
+            final float[] column = new float[height];
+            boolean separable = max > 0;
+            if (separable) {
+                System.arraycopy(weights, pivot / width * width, row, 0, width);
+                for (int ky = 0; ky < height; ky++) {
+                    column[ky] = weights[ky * width + pivot % width] / weights[pivot];
+                }
+                for (int i = 0; i < weights.length && separable; i++) {
+                    separable = Math.abs(column[i / width] * row[i % width] - weights[i]) <= max * EPSILON;
+                }
+            }
+            this.row = separable ? row : null;
+            this.column = separable ? column : null;
+        }
+
+        private float[] convolve(final float[] input, final int w, final int h) {
+            return this.row == null ? this.convolve2d(input, w, h) : this.convolveSeparable(input, w, h);
+        }
+
+        private float[] convolveSeparable(final float[] input, final int w, final int h) {
+            final int rx = this.width / 2;
+            final int ry = this.height / 2;
+            final float[] temp = new float[w * h];
+            for (int y = 0; y < h; y++) {
+                final int rowStart = y * w;
+                for (int x = 0; x < w; x++) {
+                    float sum = 0;
+                    for (int k = 0; k < this.width; k++) {
+                        sum += this.row[k] * input[rowStart + clamp(x + k - rx, w)];
+                    }
+                    temp[rowStart + x] = sum;
+                }
+            }
+
+            final float[] output = new float[w * h];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    float sum = 0;
+                    for (int k = 0; k < this.height; k++) {
+                        sum += this.column[k] * temp[clamp(y + k - ry, h) * w + x];
+                    }
+                    output[y * w + x] = sum;
+                }
+            }
+            return output;
+        }
+
+        private float[] convolve2d(final float[] input, final int w, final int h) {
+            final int rx = this.width / 2;
+            final int ry = this.height / 2;
+            final float[] output = new float[w * h];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    float sum = 0;
+                    for (int ky = 0; ky < this.height; ky++) {
+                        final int rowStart = clamp(y + ky - ry, h) * w;
+                        for (int kx = 0; kx < this.width; kx++) {
+                            sum += this.weights[ky * this.width + kx] * input[rowStart + clamp(x + kx - rx, w)];
+                        }
+                    }
+                    output[y * w + x] = sum;
+                }
+            }
+            return output;
+        }
+
+        private static int clamp(final int index, final int length) {
+            return index < 0 ? 0 : Math.min(index, length - 1);
+        }
+
+    }
+
+}
@@ -0,0 +1,209 @@
+package dev.cerus.maps.api.graphics.filter;
+
+import dev.cerus.maps.api.colormap.ColorMaps;
+import dev.cerus.maps.api.graphics.ColorCache;
+import dev.cerus.maps.api.graphics.MapGraphics;
+import dev.cerus.maps.api.graphics.image.ImageConverter;
+
+/**
+ * A rectangular area of a graphics buffer, split into red, green and blue planes
+ * <p>
+ * Filters that work on rgb values can read an area once, work on the planes and then convert
+ * the results back to map colors once. Transparent pixels are remembered and never written back.
+ */
+public final class RgbBuffer {
+
+    private final int width;
+    private final int height;
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+    // The colors that were read and the colors of pixels that are transparent now
+    private final byte[] source;
+    private final byte[] colors;
+    private final boolean[] transparent;
+
+    private RgbBuffer(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        this.red = new int[width * height];
+        this.green = new int[width * height];
+        this.blue = new int[width * height];
+        this.source = new byte[width * height];
+        this.colors = new byte[width * height];
+        this.transparent = new boolean[width * height];
+    }
+
+    /**
+     * Read an area of a graphics buffer. The area has to be within the bounds of the buffer.
+     * Colors 0 - 3 and unknown colors are treated as transparent.
+     *
+     * @param graphics The graphics buffer
+     * @param x        The x coordinate of the area
+     * @param y        The y coordinate of the area
+     * @param width    The width of the area
+     * @param height   The height of the area
+     *
+     * @return The planes of the area
+     */
+    public static RgbBuffer read(final MapGraphics<?, ?> graphics, final int x, final int y, final int width, final int height) {
+        final RgbBuffer buffer = new RgbBuffer(width, height);
+        final int[] palette = ColorMaps.current().getRgbTable();
+        ImageConverter.forEachStripe(0, height, width, (fromRow, toRow) -> {
+            for (int ay = fromRow; ay < toRow; ay++) {
+                for (int ax = 0; ax < width; ax++) {
+                    final int i = ay * width + ax;
+                    final byte color = graphics.getPixel(x + ax, y + ay);
+                    buffer.source[i] = color;
+                    buffer.set(i, color, graphics.isTransparent(color) || isTransparent(color, palette), palette);
+                }
+            }
+        });
+        return buffer;
+    }
+
+    // Colors 0 - 3 are transparent on every client, see ColorMap#rgbToMap
+    static boolean isTransparent(final byte color, final int[] palette) {
+        return (color & 0xFF) < 4 || palette[color & 0xFF] == -1;
+    }
+
+    private void set(final int index, final byte color, final boolean transparent, final int[] palette) {
+        this.colors[index] = color;
+        this.transparent[index] = transparent;
+        final int rgb = transparent ? 0 : palette[color & 0xFF];
+        this.red[index] = rgb >> 16 & 0xFF;
+        this.green[index] = rgb >> 8 & 0xFF;
+        this.blue[index] = rgb & 0xFF;
+    }
+
+    /**
+     * Convert the planes back to map colors and write them onto a graphics buffer. Pixels that did not
+     * change since the area was read are skipped.
+     * <p>
+     * The conversion runs in parallel, the graphics buffer is only modified once all colors are known.
+     *
+     * @param graphics The graphics buffer
+     * @param x        The x coordinate of the area
+     * @param y        The y coordinate of the area
+     */
+    public void write(final MapGraphics<?, ?> graphics, final int x, final int y) {
+        final int[] palette = ColorMaps.current().getRgbTable();
+        final byte[] result = new byte[this.width * this.height];
+        ImageConverter.forEachStripe(0, this.height, this.width, (fromRow, toRow) -> {
+            for (int i = fromRow * this.width; i < toRow * this.width; i++) {
+                result[i] = this.toMapColor(i, palette);
+            }
+        });
+
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] != this.source[i]) {
+                graphics.setPixel(x + i % this.width, y + i / this.width, 1f, result[i]);
+            }
+        }
+    }
+
+    // Copies the rows of an area into a new buffer
+    RgbBuffer copyRows(final int fromRow, final int toRow) {
+        final RgbBuffer copy = new RgbBuffer(this.width, toRow - fromRow);
+        copy.copyRows(this, fromRow, 0, toRow - fromRow);
+        return copy;
+    }
+
+    // Copies rows of another buffer with the same width into this buffer
+    void copyRows(final RgbBuffer from, final int fromRow, final int toRow, final int rows) {
+        final int src = fromRow * this.width;
+        final int dst = toRow * this.width;
+        final int len = rows * this.width;
+        System.arraycopy(from.red, src, this.red, dst, len);
+        System.arraycopy(from.green, src, this.green, dst, len);
+        System.arraycopy(from.blue, src, this.blue, dst, len);
+        System.arraycopy(from.source, src, this.source, dst, len);
+        System.arraycopy(from.colors, src, this.colors, dst, len);
+        System.arraycopy(from.transparent, src, this.transparent, dst, len);
+    }
+
+    /**
+     * Get the current map color of a pixel. Opaque pixels are converted from their rgb values.
+     *
+     * @param index The index of the pixel ({@code x + y * width})
+     *
+     * @return The map color
+     */
+    public byte getColor(final int index) {
+        return this.toMapColor(index, ColorMaps.current().getRgbTable());
+    }
+
+    /**
+     * Replace a pixel with a map color. Colors 0 - 3 and unknown colors are treated as transparent.
+     *
+     * @param index The index of the pixel ({@code x + y * width})
+     * @param color The new map color
+     */
+    public void setColor(final int index, final byte color) {
+        final int[] palette = ColorMaps.current().getRgbTable();
+        this.set(index, color, isTransparent(color, palette), palette);
+    }
+
+    private byte toMapColor(final int index, final int[] palette) {
+        if (this.transparent[index]) {
+            return this.colors[index];
+        }
+        final int r = clamp(this.red[index]);
+        final int g = clamp(this.green[index]);
+        final int b = clamp(this.blue[index]);
+        final byte color = this.colors[index];
+        // Don't move pixels to a different id of the same color
+        return palette[color & 0xFF] == (r << 16 | g << 8 | b) ? color : ColorCache.rgbToMap(r, g, b);
+    }
+
+    private static int clamp(final int component) {
+        return Math.max(0, Math.min(255, component));
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Get the red plane, indexed by {@code x + y * width}. Values outside of 0 - 255 are clamped when written.
+     *
+     * @return The red plane
+     */
+    public int[] getRed() {
+        return this.red;
+    }
+
+    /**
+     * Get the green plane, indexed by {@code x + y * width}. Values outside of 0 - 255 are clamped when written.
+     *
+     * @return The green plane
+     */
+    public int[] getGreen() {
+        return this.green;
+    }
+
+    /**
+     * Get the blue plane, indexed by {@code x + y * width}. Values outside of 0 - 255 are clamped when written.
+     *
+     * @return The blue plane
+     */
+    public int[] getBlue() {
+        return this.blue;
+    }
+
+    /**
+     * Check if a pixel is transparent. Transparent pixels have no rgb values.
+     *
+     * @param index The index of the pixel ({@code x + y * width})
+     *
+     * @return True if the pixel is transparent
+     */
+    public boolean isTransparent(final int index) {
+        return this.transparent[index];
+    }
+
+}
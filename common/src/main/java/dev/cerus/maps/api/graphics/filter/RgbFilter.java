@@ -0,0 +1,29 @@
+package dev.cerus.maps.api.graphics.filter;
+
+/**
+ * A filter that works on rgb planes instead of map colors
+ * <p>
+ * Rgb filters can be chained in a {@link FilterPipeline} without converting to map colors in between.
+ */
+@FunctionalInterface
+public interface RgbFilter {
+
+    /**
+     * Apply this filter to the planes of an area, including all of its passes
+     *
+     * @param buffer The planes to modify
+     */
+    void apply(RgbBuffer buffer);
+
+    /**
+     * How far away the neighbours that affect a pixel can be, over all passes. Filters with a known radius
+     * can be split into stripes that are processed in parallel, every stripe gets this many extra rows
+     * above and below it. Filters that return -1 always see the whole area.
+     *
+     * @return The radius in pixels or -1 if it's unknown
+     */
+    default int radius() {
+        return -1;
+    }
+
+}
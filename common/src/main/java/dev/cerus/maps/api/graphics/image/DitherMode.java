@@ -0,0 +1,29 @@
+package dev.cerus.maps.api.graphics.image;
+
+/**
+ * Decides how images are dithered when they are converted to map colors
+ */
+public enum DitherMode {
+
+    /**
+     * No dithering, every pixel is simply mapped to the closest color
+     */
+    NONE,
+
+    /**
+     * Floyd-Steinberg error diffusion. Spreads the whole error onto the neighbouring pixels.
+     */
+    FLOYD_STEINBERG,
+
+    /**
+     * Atkinson error diffusion. Only spreads 3/4 of the error, which keeps more contrast.
+     */
+    ATKINSON,
+
+    /**
+     * Ordered dithering with an 8x8 Bayer matrix. Every pixel can be converted on its own, so
+     * rows are converted in parallel.
+     */
+    ORDERED
+
+}
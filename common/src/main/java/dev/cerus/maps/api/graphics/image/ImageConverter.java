@@ -0,0 +1,263 @@
+package dev.cerus.maps.api.graphics.image;
+
+import dev.cerus.maps.api.colormap.ColorMap;
+import dev.cerus.maps.api.colormap.ColorMaps;
+import dev.cerus.maps.api.colormap.ColorMetric;
+import dev.cerus.maps.api.graphics.ColorCache;
+import dev.cerus.maps.api.graphics.StandaloneMapGraphics;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts images into map colors
+ * <p>
+ * Images are processed as packed ARGB int rasters. Pixels with an alpha below 128 become transparent.
+ */
+public class ImageConverter {
+
+    private static final int[][] BAYER_8X8 = {
+            {0, 32, 8, 40, 2, 34, 10, 42},
+            {48, 16, 56, 24, 50, 18, 58, 26},
+            {12, 44, 4, 36, 14, 46, 6, 38},
+            {60, 28, 52, 20, 62, 30, 54, 22},
+            {3, 35, 11, 43, 1, 33, 9, 41},
+            {51, 19, 59, 27, 49, 17, 57, 25},
+            {15, 47, 7, 39, 13, 45, 5, 37},
+            {63, 31, 55, 23, 61, 29, 53, 21}
+    };
+    // How far the ordered dithering is allowed to move a color on each channel
+    private static final int ORDERED_SPREAD = 32;
+    // Stripes with less pixels than this are not split any further
+    private static final int STRIPE_PIXELS = 16384;
+
+    private ImageConverter() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Convert an image using the current color map and the default color metric
+     *
+     * @param image The image
+     * @param mode  The dithering mode
+     *
+     * @return A new graphics instance that contains the converted image
+     */
+    public static StandaloneMapGraphics convert(final BufferedImage image, final DitherMode mode) {
+        final ImageRaster raster = ImageRaster.of(image);
+        return convert(raster.toArgb(), raster.getWidth(), raster.getHeight(), mode, ColorMaps.current(), ColorCache.getDefaultMetric());
+    }
+
+    /**
+     * Convert a packed ARGB raster. The raster will not be modified.
+     *
+     * @param argb     The pixels, row by row
+     * @param width    The width of the raster
+     * @param height   The height of the raster
+     * @param mode     The dithering mode
+     * @param colorMap The color map to convert to
+     * @param metric   The metric that's used to find the closest colors
+     *
+     * @return A new graphics instance that contains the converted raster
+     */
+    public static StandaloneMapGraphics convert(final int[] argb,
+                                                final int width,
+                                                final int height,
+                                                final DitherMode mode,
+                                                final ColorMap colorMap,
+                                                final ColorMetric metric) {
+        if (argb.length < width * height) {
+            throw new IllegalArgumentException("Raster is too small");
+        }
+
+        final StandaloneMapGraphics graphics = new StandaloneMapGraphics(width, height);
+        final byte[] out = graphics.getDirectAccessData();
+        switch (mode) {
+            case NONE -> forEachStripe(0, height, width, (fromRow, toRow) -> {
+                for (int i = fromRow * width; i < toRow * width; i++) {
+                    final int pixel = argb[i];
+                    out[i] = isOpaque(pixel) ? nearest(colorMap, metric, pixel >> 16 & 0xFF, pixel >> 8 & 0xFF, pixel & 0xFF) : 0;
+                }
+            });
+            case ORDERED -> forEachStripe(0, height, width, (fromRow, toRow) -> {
+                for (int y = fromRow; y < toRow; y++) {
+                    final int[] thresholds = BAYER_8X8[y & 7];
+                    for (int x = 0; x < width; x++) {
+                        final int pixel = argb[y * width + x];
+                        if (!isOpaque(pixel)) {
+                            out[y * width + x] = 0;
+                            continue;
+                        }
+                        // Move the color by a different amount for every position of the matrix
+                        final int offset = ((thresholds[x & 7] * 2 + 1) * ORDERED_SPREAD) / 128 - ORDERED_SPREAD / 2;
+                        out[y * width + x] = nearest(colorMap, metric,
+                                clamp((pixel >> 16 & 0xFF) + offset),
+                                clamp((pixel >> 8 & 0xFF) + offset),
+                                clamp((pixel & 0xFF) + offset));
+                    }
+                }
+            });
+            case FLOYD_STEINBERG -> diffuse(argb, width, height, out, colorMap, metric, false);
+            case ATKINSON -> diffuse(argb, width, height, out, colorMap, metric, true);
+        }
+        graphics.markDirty();
+        return graphics;
+    }
+
+    /**
+     * Process rows in parallel. The rows are split into stripes of a few thousand pixels which are
+     * processed on the common fork/join pool. The calling thread helps out and returns once all stripes are done.
+     *
+     * @param fromRow The first row
+     * @param toRow   The row after the last row
+     * @param width   The amount of pixels per row, used to determine the stripe size
+     * @param action  The action that processes a stripe
+     */
+    public static void forEachStripe(final int fromRow, final int toRow, final int width, final StripeAction action) {
+        forEachStripe(fromRow, toRow, width, 1, action);
+    }
+
+    /**
+     * Process rows in parallel, see {@link #forEachStripe(int, int, int, StripeAction)}. Stripes will have
+     * at least the specified amount of rows unless there are fewer rows in total.
+     *
+     * @param fromRow The first row
+     * @param toRow   The row after the last row
+     * @param width   The amount of pixels per row, used to determine the stripe size
+     * @param minRows The minimum amount of rows per stripe
+     * @param action  The action that processes a stripe
+     */
+    public static void forEachStripe(final int fromRow, final int toRow, final int width, final int minRows, final StripeAction action) {
+        if (fromRow >= toRow) {
+            return;
+        }
+        final int rowsPerStripe = Math.max(Math.max(1, minRows), STRIPE_PIXELS / Math.max(1, width));
+        if (toRow - fromRow <= rowsPerStripe) {
+            action.process(fromRow, toRow);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new StripeTask(fromRow, toRow, rowsPerStripe, action));
+    }
+
+    /**
+     * Converts a raster using error diffusion. The error of every pixel is carried over to the following pixels,
+     * so this can't be done in parallel.
+     */
+    private static void diffuse(final int[] argb,
+                                final int width,
+                                final int height,
+                                final byte[] out,
+                                final ColorMap colorMap,
+                                final ColorMetric metric,
+                                final boolean atkinson) {
+        final int[] palette = colorMap.getRgbTable();
+        // Accumulated errors of the current and the next two rows, with two pixels of padding on each side
+        final int rowLength = (width + 4) * 3;
+        int[] current = new int[rowLength];
+        int[] next = new int[rowLength];
+        int[] afterNext = new int[rowLength];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int pixel = argb[y * width + x];
+                if (!isOpaque(pixel)) {
+                    out[y * width + x] = 0;
+                    continue;
+                }
+
+                final int e = (x + 2) * 3;
+                final int r = clamp((pixel >> 16 & 0xFF) + current[e]);
+                final int g = clamp((pixel >> 8 & 0xFF) + current[e + 1]);
+                final int b = clamp((pixel & 0xFF) + current[e + 2]);
+                final byte color = nearest(colorMap, metric, r, g, b);
+                out[y * width + x] = color;
+
+                final int rgb = palette[color & 0xFF];
+                final int[] error = {r - (rgb >> 16 & 0xFF), g - (rgb >> 8 & 0xFF), b - (rgb & 0xFF)};
+                for (int c = 0; c < 3; c++) {
+                    final int err = error[c];
+                    if (atkinson) {
+                        final int part = err / 8;
+                        current[e + 3 + c] += part;
+                        current[e + 6 + c] += part;
+                        next[e - 3 + c] += part;
+                        next[e + c] += part;
+                        next[e + 3 + c] += part;
+                        afterNext[e + c] += part;
+                    } else {
+                        current[e + 3 + c] += err * 7 / 16;
+                        next[e - 3 + c] += err * 3 / 16;
+                        next[e + c] += err * 5 / 16;
+                        next[e + 3 + c] += err / 16;
+                    }
+                }
+            }
+
+            // Move on to the next row
+            final int[] tmp = current;
+            current = next;
+            next = afterNext;
+            afterNext = tmp;
+            Arrays.fill(afterNext, 0);
+        }
+    }
+
+    private static byte nearest(final ColorMap colorMap, final ColorMetric metric, final int r, final int g, final int b) {
+        return colorMap.getConversionCache().rgbToMap(r, g, b, metric);
+    }
+
+    private static boolean isOpaque(final int argb) {
+        return argb >>> 24 >= 128;
+    }
+
+    private static int clamp(final int component) {
+        return Math.max(0, Math.min(255, component));
+    }
+
+    /**
+     * Processes a stripe of rows
+     */
+    @FunctionalInterface
+    public interface StripeAction {
+
+        /**
+         * Process a stripe
+         *
+         * @param fromRow The first row of the stripe
+         * @param toRow   The row after the last row of the stripe
+         */
+        void process(int fromRow, int toRow);
+
+    }
+
+    private static final class StripeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int fromRow;
+        private final int toRow;
+        private final int rowsPerStripe;
+        private final StripeAction action;
+
+        private StripeTask(final int fromRow, final int toRow, final int rowsPerStripe, final StripeAction action) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.rowsPerStripe = rowsPerStripe;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.toRow - this.fromRow <= this.rowsPerStripe) {
+                this.action.process(this.fromRow, this.toRow);
+                return;
+            }
+            final int mid = (this.fromRow + this.toRow) >>> 1;
+            invokeAll(new StripeTask(this.fromRow, mid, this.rowsPerStripe, this.action),
+                    new StripeTask(mid, this.toRow, this.rowsPerStripe, this.action));
+        }
+
+    }
+
+}
@@ -0,0 +1,133 @@
+package dev.cerus.maps.api.graphics.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Reads the pixels of an image as packed ARGB ints
+ * <p>
+ * The most common image types (INT_ARGB, INT_RGB, 3BYTE_BGR and 4BYTE_ABGR) are read straight from
+ * their data buffer, all the other types go through {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+ * Reading is thread safe as long as the image is not modified at the same time.
+ */
+public final class ImageRaster {
+
+    private final BufferedImage image;
+    private final RowReader reader;
+
+    private ImageRaster(final BufferedImage image, final RowReader reader) {
+        this.image = image;
+        this.reader = reader;
+    }
+
+    /**
+     * Create a raster for an image
+     *
+     * @param image The image
+     *
+     * @return The raster
+     */
+    public static ImageRaster of(final BufferedImage image) {
+        final WritableRaster raster = image.getRaster();
+        final int transX = raster.getSampleModelTranslateX();
+        final int transY = raster.getSampleModelTranslateY();
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB -> {
+                if (raster.getDataBuffer() instanceof DataBufferInt buffer
+                        && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel) {
+                    final int[] data = buffer.getData();
+                    final int stride = sampleModel.getScanlineStride();
+                    final int base = buffer.getOffset() - transX - transY * stride;
+                    // INT_RGB leaves the alpha bits undefined
+                    final int alpha = image.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+                    return new ImageRaster(image, (x, y, len, out, off) -> {
+                        final int start = base + y * stride + x;
+                        if (alpha == 0) {
+                            System.arraycopy(data, start, out, off, len);
+                        } else {
+                            for (int i = 0; i < len; i++) {
+                                out[off + i] = data[start + i] | alpha;
+                            }
+                        }
+                    });
+                }
+            }
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR -> {
+                if (raster.getDataBuffer() instanceof DataBufferByte buffer
+                        && raster.getSampleModel() instanceof ComponentSampleModel sampleModel) {
+                    final byte[] data = buffer.getData();
+                    final int stride = sampleModel.getScanlineStride();
+                    final int pixelStride = sampleModel.getPixelStride();
+                    final int[] bandOffsets = sampleModel.getBandOffsets();
+                    final int base = buffer.getOffset() - transX * pixelStride - transY * stride;
+                    final int r = bandOffsets[0];
+                    final int g = bandOffsets[1];
+                    final int b = bandOffsets[2];
+                    final int a = bandOffsets.length > 3 ? bandOffsets[3] : -1;
+                    return new ImageRaster(image, (x, y, len, out, off) -> {
+                        int index = base + y * stride + x * pixelStride;
+                        for (int i = 0; i < len; i++, index += pixelStride) {
+                            out[off + i] = (a == -1 ? 0xFF000000 : (data[index + a] & 0xFF) << 24)
+                                    | (data[index + r] & 0xFF) << 16
+                                    | (data[index + g] & 0xFF) << 8
+                                    | (data[index + b] & 0xFF);
+                        }
+                    });
+                }
+            }
+            default -> {
+            }
+        }
+        return new ImageRaster(image, (x, y, len, out, off) -> image.getRGB(x, y, len, 1, out, off, len));
+    }
+
+    /**
+     * Read a part of a row. Callers need to make sure that the coordinates are within bounds.
+     *
+     * @param x   The x coordinate of the first pixel
+     * @param y   The y coordinate
+     * @param len The amount of pixels to read
+     * @param out The array to read into
+     * @param off The index in the array where the first pixel should be stored
+     */
+    public void readRow(final int x, final int y, final int len, final int[] out, final int off) {
+        this.reader.read(x, y, len, out, off);
+    }
+
+    /**
+     * Read the whole image. Rows are read in parallel.
+     *
+     * @return The pixels of the image, row by row
+     */
+    public int[] toArgb() {
+        final int width = this.getWidth();
+        final int[] argb = new int[width * this.getHeight()];
+        ImageConverter.forEachStripe(0, this.getHeight(), width, (fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                this.readRow(0, y, width, argb, y * width);
+            }
+        });
+        return argb;
+    }
+
+    public int getWidth() {
+        return this.image.getWidth();
+    }
+
+    public int getHeight() {
+        return this.image.getHeight();
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+
+        void read(int x, int y, int len, int[] out, int off);
+
+    }
+
+}
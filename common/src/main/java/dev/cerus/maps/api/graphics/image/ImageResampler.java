@@ -0,0 +1,190 @@
+package dev.cerus.maps.api.graphics.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Scales packed ARGB rasters
+ * <p>
+ * All filters are applied as a horizontal and a vertical pass. Colors are interpolated with premultiplied alpha,
+ * so transparent pixels don't bleed into their neighbours. When shrinking, bilinear and bicubic filters are widened
+ * by the scale factor so every source pixel contributes to the result.
+ */
+public final class ImageResampler {
+
+    private ImageResampler() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Scale an image
+     *
+     * @param image  The image
+     * @param width  The target width
+     * @param height The target height
+     * @param filter The resampling filter
+     *
+     * @return The scaled pixels, row by row
+     */
+    public static int[] resample(final BufferedImage image, final int width, final int height, final ResamplingFilter filter) {
+        final ImageRaster raster = ImageRaster.of(image);
+        return resample(raster.toArgb(), raster.getWidth(), raster.getHeight(), width, height, filter);
+    }
+
+    /**
+     * Scale a packed ARGB raster. The raster will not be modified.
+     *
+     * @param argb         The pixels, row by row
+     * @param sourceWidth  The width of the raster
+     * @param sourceHeight The height of the raster
+     * @param width        The target width
+     * @param height       The target height
+     * @param filter       The resampling filter
+     *
+     * @return The scaled pixels, row by row
+     */
+    public static int[] resample(final int[] argb,
+                                 final int sourceWidth,
+                                 final int sourceHeight,
+                                 final int width,
+                                 final int height,
+                                 final ResamplingFilter filter) {
+        if (width <= 0 || height <= 0 || sourceWidth <= 0 || sourceHeight <= 0) {
+            throw new IllegalArgumentException("Sizes need to be positive");
+        }
+        if (argb.length < sourceWidth * sourceHeight) {
+            throw new IllegalArgumentException("Raster is too small");
+        }
+        if (width == sourceWidth && height == sourceHeight) {
+            return argb.clone();
+        }
+
+        final Taps horizontal = Taps.of(filter, sourceWidth, width);
+        final Taps vertical = Taps.of(filter, sourceHeight, height);
+
+        // Horizontal pass, premultiplied alpha, red, green and blue of every source row
+        final float[] temp = new float[sourceHeight * width * 4];
+        ImageConverter.forEachStripe(0, sourceHeight, width, (fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                final int row = y * sourceWidth;
+                for (int x = 0; x < width; x++) {
+                    final float[] weights = horizontal.weights[x];
+                    float a = 0, r = 0, g = 0, b = 0;
+                    for (int t = 0; t < weights.length; t++) {
+                        final int pixel = argb[row + horizontal.first[x] + t];
+                        final float alpha = (pixel >>> 24) * weights[t];
+                        a += alpha;
+                        r += (pixel >> 16 & 0xFF) * alpha;
+                        g += (pixel >> 8 & 0xFF) * alpha;
+                        b += (pixel & 0xFF) * alpha;
+                    }
+                    final int i = (y * width + x) * 4;
+                    temp[i] = a;
+                    temp[i + 1] = r;
+                    temp[i + 2] = g;
+                    temp[i + 3] = b;
+                }
+            }
+        });
+
+        // Vertical pass, convert back to straight alpha
+        final int[] out = new int[width * height];
+        ImageConverter.forEachStripe(0, height, width, (fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                final float[] weights = vertical.weights[y];
+                for (int x = 0; x < width; x++) {
+                    float a = 0, r = 0, g = 0, b = 0;
+                    for (int t = 0; t < weights.length; t++) {
+                        final int i = ((vertical.first[y] + t) * width + x) * 4;
+                        a += temp[i] * weights[t];
+                        r += temp[i + 1] * weights[t];
+                        g += temp[i + 2] * weights[t];
+                        b += temp[i + 3] * weights[t];
+                    }
+                    final int alpha = clamp(Math.round(a));
+                    if (alpha == 0) {
+                        continue;
+                    }
+                    out[y * width + x] = alpha << 24
+                            | clamp(Math.round(r / a)) << 16
+                            | clamp(Math.round(g / a)) << 8
+                            | clamp(Math.round(b / a));
+                }
+            }
+        });
+        return out;
+    }
+
+    private static int clamp(final int component) {
+        return Math.max(0, Math.min(255, component));
+    }
+
+    private static float kernel(final ResamplingFilter filter, final float distance) {
+        final float d = Math.abs(distance);
+        return switch (filter) {
+            case BILINEAR -> Math.max(0f, 1f - d);
+            // Catmull-Rom (a = -0.5)
+            case BICUBIC -> d < 1f ? 1.5f * d * d * d - 2.5f * d * d + 1f
+                    : d < 2f ? -0.5f * d * d * d + 2.5f * d * d - 4f * d + 2f
+                    : 0f;
+            case NEAREST, AREA_AVERAGE -> throw new IllegalArgumentException(filter.name());
+        };
+    }
+
+    // The source pixels and weights of every target pixel along one axis
+    private record Taps(int[] first, float[][] weights) {
+
+        private static Taps of(final ResamplingFilter filter, final int sourceSize, final int targetSize) {
+            final float scale = (float) sourceSize / targetSize;
+            final int[] first = new int[targetSize];
+            final float[][] weights = new float[targetSize][];
+            for (int i = 0; i < targetSize; i++) {
+                switch (filter) {
+                    case NEAREST -> {
+                        first[i] = Math.min(sourceSize - 1, (int) ((i + 0.5f) * scale));
+                        weights[i] = new float[] {1f};
+                    }
+                    case AREA_AVERAGE -> {
+                        // Overlap of the target pixel with every source pixel it touches
+                        final float from = i * scale;
+                        final float to = Math.min(sourceSize, (i + 1) * scale);
+                        first[i] = Math.min(sourceSize - 1, (int) from);
+                        final int last = Math.max(first[i], Math.min(sourceSize - 1, (int) Math.ceil(to) - 1));
+                        weights[i] = new float[last - first[i] + 1];
+                        for (int j = first[i]; j <= last; j++) {
+                            weights[i][j - first[i]] = Math.min(to, j + 1) - Math.max(from, j);
+                        }
+                    }
+                    case BILINEAR, BICUBIC -> {
+                        final float support = (filter == ResamplingFilter.BILINEAR ? 1f : 2f) * Math.max(1f, scale);
+                        final float stretch = Math.max(1f, scale);
+                        final float center = (i + 0.5f) * scale - 0.5f;
+                        first[i] = Math.max(0, (int) Math.ceil(center - support));
+                        final int last = Math.min(sourceSize - 1, (int) Math.floor(center + support));
+                        weights[i] = new float[Math.max(1, last - first[i] + 1)];
+                        for (int j = first[i]; j <= last; j++) {
+                            weights[i][j - first[i]] = kernel(filter, (j - center) / stretch);
+                        }
+                    }
+                }
+                normalize(weights[i]);
+            }
+            return new Taps(first, weights);
+        }
+
+        private static void normalize(final float[] weights) {
+            float sum = 0;
+            for (final float weight : weights) {
+                sum += weight;
+            }
+            if (sum == 0) {
+                weights[0] = 1f;
+                return;
+            }
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] /= sum;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,28 @@
+package dev.cerus.maps.api.graphics.image;
+
+/**
+ * Decides how images are resampled when they are drawn at a different size
+ */
+public enum ResamplingFilter {
+
+    /**
+     * Every pixel takes the color of the closest source pixel. Fastest, keeps hard edges (good for pixel art).
+     */
+    NEAREST,
+
+    /**
+     * Linear interpolation between the closest source pixels. Smooth, slightly blurry.
+     */
+    BILINEAR,
+
+    /**
+     * Cubic (Catmull-Rom) interpolation. Sharper than bilinear, can overshoot a little at hard edges.
+     */
+    BICUBIC,
+
+    /**
+     * Every pixel is the average of the source pixels it covers. Best for shrinking images.
+     */
+    AREA_AVERAGE
+
+}
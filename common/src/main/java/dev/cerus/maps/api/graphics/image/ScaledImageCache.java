@@ -0,0 +1,186 @@
+package dev.cerus.maps.api.graphics.image;
+
+import dev.cerus.maps.api.colormap.ColorMap;
+import dev.cerus.maps.api.colormap.ColorMaps;
+import dev.cerus.maps.api.colormap.ColorMetric;
+import dev.cerus.maps.api.graphics.ColorCache;
+import dev.cerus.maps.api.graphics.StandaloneMapGraphics;
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Least recently used cache of scaled and converted images
+ * <p>
+ * Images are identified by their instance, not by their contents. If an image is modified after it was drawn,
+ * {@link #invalidate(BufferedImage)} has to be called, otherwise the old contents will be drawn.
+ * The cached buffers must not be modified.
+ * <p>
+ * Only weak references to the images are kept, entries of images that were garbage collected are removed.
+ */
+public final class ScaledImageCache {
+
+    /**
+     * The amount of images that the default cache keeps
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final ScaledImageCache DEFAULT = new ScaledImageCache(DEFAULT_CAPACITY);
+
+    private final Map<Key, StandaloneMapGraphics> entries;
+    private final ReferenceQueue<BufferedImage> collected = new ReferenceQueue<>();
+
+    public ScaledImageCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, StandaloneMapGraphics> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the cache that is used by {@link dev.cerus.maps.api.graphics.MapGraphics}
+     *
+     * @return The default cache
+     */
+    public static ScaledImageCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Get an image that was scaled and converted with the current color map and the default color metric.
+     * The image is scaled and converted if it's not cached yet.
+     *
+     * @param image  The image
+     * @param width  The target width
+     * @param height The target height
+     * @param filter The resampling filter
+     * @param mode   The dithering mode
+     *
+     * @return The converted image, must not be modified
+     */
+    public StandaloneMapGraphics get(final BufferedImage image,
+                                     final int width,
+                                     final int height,
+                                     final ResamplingFilter filter,
+                                     final DitherMode mode) {
+        final ColorMap colorMap = ColorMaps.current();
+        final ColorMetric metric = ColorCache.getDefaultMetric();
+        final Key key = new Key(image, this.collected, width, height, filter, mode, colorMap, metric);
+        synchronized (this) {
+            this.expunge();
+            final StandaloneMapGraphics cached = this.entries.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        // Don't block other lookups while converting, two threads might convert the same image at worst
+        final int[] argb = ImageResampler.resample(image, width, height, filter);
+        final StandaloneMapGraphics converted = ImageConverter.convert(argb, width, height, mode, colorMap, metric);
+        synchronized (this) {
+            this.entries.put(key, converted);
+        }
+        return converted;
+    }
+
+    /**
+     * Remove all cached versions of an image
+     *
+     * @param image The image
+     */
+    public synchronized void invalidate(final BufferedImage image) {
+        this.expunge();
+        this.entries.keySet().removeIf(key -> key.get() == image);
+    }
+
+    /**
+     * Remove all cached images
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Get the amount of cached images
+     *
+     * @return The amount of cached images
+     */
+    public synchronized int size() {
+        this.expunge();
+        return this.entries.size();
+    }
+
+    // Removes the entries of collected images, callers need to hold the lock
+    private void expunge() {
+        Reference<? extends BufferedImage> reference;
+        while ((reference = this.collected.poll()) != null) {
+            this.entries.remove((Key) reference);
+        }
+    }
+
+    // The key is the weak reference itself, images are compared by identity
+    private static final class Key extends WeakReference<BufferedImage> {
+
+        private final int imageHash;
+        private final int width;
+        private final int height;
+        private final ResamplingFilter filter;
+        private final DitherMode mode;
+        private final ColorMap colorMap;
+        private final ColorMetric metric;
+
+        private Key(final BufferedImage image,
+                    final ReferenceQueue<BufferedImage> queue,
+                    final int width,
+                    final int height,
+                    final ResamplingFilter filter,
+                    final DitherMode mode,
+                    final ColorMap colorMap,
+                    final ColorMetric metric) {
+            super(image, queue);
+            this.imageHash = System.identityHashCode(image);
+            this.width = width;
+            this.height = height;
+            this.filter = filter;
+            this.mode = mode;
+            this.colorMap = colorMap;
+            this.metric = metric;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            final BufferedImage image = this.get();
+            // Keys of collected images are only equal to themselves
+            return image != null
+                    && image == other.get()
+                    && this.width == other.width
+                    && this.height == other.height
+                    && this.filter == other.filter
+                    && this.mode == other.mode
+                    && this.colorMap == other.colorMap
+                    && this.metric == other.metric;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.imageHash, this.width, this.height, this.filter, this.mode, System.identityHashCode(this.colorMap), this.metric);
+        }
+
+    }
+
+}
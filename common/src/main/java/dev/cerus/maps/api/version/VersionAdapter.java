@@ -2,6 +2,7 @@ package dev.cerus.maps.api.version;
 
 import dev.cerus.maps.api.ClientsideMap;
 import dev.cerus.maps.api.Frame;
+import dev.cerus.maps.api.colormap.PaletteRemap;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -19,7 +20,20 @@ public interface VersionAdapter {
      *
      * @return The new packet
      */
-    Object makeMapPacket(boolean ignoreBounds, ClientsideMap map);
+    default Object makeMapPacket(final boolean ignoreBounds, final ClientsideMap map) {
+        return this.makeMapPacket(ignoreBounds, map, null);
+    }
+
+    /**
+     * Make a packet to send a map to a player whose client uses a different palette
+     *
+     * @param ignoreBounds If true, implementations should use the full buffer and ignore the bounds
+     * @param map          The map
+     * @param remap        The remap table that is applied to the colors of the packet, or null
+     *
+     * @return The new packet
+     */
+    Object makeMapPacket(boolean ignoreBounds, ClientsideMap map, PaletteRemap remap);
 
     /**
      * Make a frame update packet to display fake items
@@ -2,7 +2,12 @@ package dev.cerus.maps.plugin;
 
 import co.aikar.commands.BukkitCommandManager;
 import dev.cerus.maps.api.colormap.ColorMaps;
+import dev.cerus.maps.api.colormap.ColorMetric;
+import dev.cerus.maps.api.colormap.CompositeTable;
+import dev.cerus.maps.api.colormap.ConversionCache;
+import dev.cerus.maps.api.colormap.PersistentColorTable;
 import dev.cerus.maps.api.font.MapFont;
+import dev.cerus.maps.api.graphics.ColorCache;
 import dev.cerus.maps.api.version.VersionAdapter;
 import dev.cerus.maps.plugin.command.MapsCommand;
 import dev.cerus.maps.plugin.dev.DevContext;
@@ -12,6 +17,7 @@ import dev.cerus.maps.plugin.listener.PlayerListener;
 import dev.cerus.maps.plugin.map.MapScreenRegistry;
 import dev.cerus.maps.version.VersionAdapterFactory;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -27,6 +33,13 @@ public class MapsPlugin extends JavaPlugin {
     public void onEnable() {
         this.saveResource("maps_config.yml", false);
         final YamlConfiguration mapsConfig = YamlConfiguration.loadConfiguration(new File(this.getDataFolder(), "maps_config.yml"));
+        CompositeTable.setDefaultLevels(Math.max(2, mapsConfig.getInt("composite-alpha-levels", CompositeTable.DEFAULT_LEVELS)));
+        ConversionCache.setDefaultBudget(Math.max(1, mapsConfig.getInt("color-cache-budget-mb", 16)) * 1024L * 1024L);
+        try {
+            ColorCache.setDefaultMetric(ColorMetric.valueOf(mapsConfig.getString("color-metric", "RGB").toUpperCase()));
+        } catch (final IllegalArgumentException ex) {
+            this.getLogger().warning("Unknown color metric, falling back to RGB");
+        }
 
         final VersionAdapter versionAdapter = new VersionAdapterFactory().makeAdapter();
         if (versionAdapter == null) {
@@ -90,8 +103,25 @@ public class MapsPlugin extends JavaPlugin {
             this.getServer().getPluginManager().registerEvents(new DevListener(this), this);
         }
 
-        // Force classes to initialize now
-        this.doNothing(ColorMaps.class, MapFont.class);
+        // Force classes to initialize now. Color maps are loaded lazily, they don't need this anymore.
+        this.doNothing(MapFont.class);
+
+        if (mapsConfig.getBoolean("precompute-composite-table", false)) {
+            this.getServer().getScheduler().runTaskAsynchronously(this, () -> ColorMaps.current().getCompositeTable().buildAll());
+        }
+        if (mapsConfig.getBoolean("persist-color-table", true)) {
+            this.getServer().getScheduler().runTaskAsynchronously(this, () -> {
+                try {
+                    ColorMaps.current().getConversionCache().setPersistentTable(PersistentColorTable.load(
+                            this.getDataFolder().toPath().resolve("color-tables"),
+                            ColorMaps.current(),
+                            ColorCache.getDefaultMetric()
+                    ));
+                } catch (final IOException ex) {
+                    this.getLogger().log(Level.WARNING, "Failed to load the color table", ex);
+                }
+            });
+        }
     }
 
     @Override
@@ -8,8 +8,10 @@ import co.aikar.commands.annotation.Subcommand;
 import dev.cerus.maps.api.Frame;
 import dev.cerus.maps.api.MapScreen;
 import dev.cerus.maps.api.Marker;
+import dev.cerus.maps.api.colormap.ColorMaps;
+import dev.cerus.maps.api.colormap.CompositeTable;
+import dev.cerus.maps.api.colormap.ConversionCache;
 import dev.cerus.maps.api.graphics.ColorCache;
-import dev.cerus.maps.api.graphics.CompositeColorCache;
 import dev.cerus.maps.api.graphics.FunctionalMapGraphics;
 import dev.cerus.maps.api.graphics.MapGraphics;
 import dev.cerus.maps.api.graphics.StandaloneMapGraphics;
@@ -142,30 +144,8 @@ public class MapsCommand extends BaseCommand {
         graphics.fillComplete(ColorCache.rgbToMap(0, 0, 255));
         mapScreen.clearMarkers();
 
-        final MapGraphics<MapGraphics<?, ?>, ?> canvas = MapGraphics.standalone(300, 40);
-
-        final MapGraphics<MapGraphics<?, ?>, ?> circleTopLeft = MapGraphics.standalone(8, 8);
-        circleTopLeft.drawEllipse(7, 7, 7, 7, ColorCache.rgbToMap(232, 232, 232));
-        final MapGraphics<MapGraphics<?, ?>, ?> circleTopRight = MapGraphics.standalone(8, 8);
-        circleTopRight.drawEllipse(0, 7, 7, 7, ColorCache.rgbToMap(232, 232, 232));
-        final MapGraphics<MapGraphics<?, ?>, ?> circleBottomLeft = MapGraphics.standalone(8, 8);
-        circleBottomLeft.drawEllipse(7, 0, 7, 7, ColorCache.rgbToMap(232, 232, 232));
-        final MapGraphics<MapGraphics<?, ?>, ?> circleBottomRight = MapGraphics.standalone(8, 8);
-        circleBottomRight.drawEllipse(0, 0, 7, 7, ColorCache.rgbToMap(232, 232, 232));
-
-        canvas.place(circleTopLeft, 0, 0);
-        canvas.place(circleTopRight, canvas.getWidth() - 8, 0);
-        canvas.place(circleBottomLeft, 0, canvas.getHeight() - 8);
-        canvas.place(circleBottomRight, canvas.getWidth() - 8, canvas.getHeight() - 8);
-        canvas.drawLine(0, 8, 0, canvas.getHeight() - 8, ColorCache.rgbToMap(232, 232, 232), 1f);
-        canvas.drawLine(canvas.getWidth() - 1, 8, canvas.getWidth() - 1, canvas.getHeight() - 8, ColorCache.rgbToMap(232, 232, 232), 1f);
-        canvas.drawLine(8, 0, canvas.getWidth() - 8, 0, ColorCache.rgbToMap(232, 232, 232), 1f);
-        canvas.drawLine(8, canvas.getHeight() - 1, canvas.getWidth() - 8, canvas.getHeight() - 1, ColorCache.rgbToMap(232, 232, 232), 1f);
-        canvas.fill(canvas.getWidth() / 2, 1, ColorCache.rgbToMap(255, 255, 255), 1f);
-        //canvas.drawRect(7, 0, canvas.getWidth() - 15, canvas.getHeight() - 1, ColorCache.rgbToMap(255, 255, 255));
-
-        //canvas.drawRect(32, 0, canvas.getWidth() - 33, canvas.getHeight() - 1, ColorCache.rgbToMap(255, 0, 0));
-        graphics.place(canvas, 64, 64);
+        graphics.fillRoundRect(64, 64, 300, 40, 8, ColorCache.rgbToMap(255, 255, 255), 1f);
+        graphics.drawRoundRect(64, 64, 300, 40, 8, ColorCache.rgbToMap(232, 232, 232), 1f);
 
         mapScreen.spawnFrames(player);
         mapScreen.sendMaps(false, player);
@@ -381,7 +361,10 @@ public class MapsCommand extends BaseCommand {
 
         nanoDiff = nanoAfter - nanoBefore;
         player.sendMessage(String.format("Send took %d ns (%.4f ms)", nanoDiff, ((double) nanoDiff) / TimeUnit.MILLISECONDS.toNanos(1)));
-        player.sendMessage("Composition cache: %d".formatted(CompositeColorCache.size()));
+        final CompositeTable compositeTable = ColorMaps.current().getCompositeTable();
+        player.sendMessage("Composition table: %d/%d levels".formatted(compositeTable.getBuiltLevels(), compositeTable.getLevels()));
+        final ConversionCache conversionCache = ColorMaps.current().getConversionCache();
+        player.sendMessage("Conversion cache: %d/%d blocks".formatted(conversionCache.getLoadedBlocks(), conversionCache.getMaxBlocks()));
     }
 
     @Subcommand("screen toggle visibility")